@@ -0,0 +1,138 @@
+package opt.test;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands samples to another sink on a background thread, so formatting and
+ * writing them stays out of the optimizer's loop. Samples wait in a bounded
+ * queue; if the writer falls that far behind, recording blocks until it
+ * catches up rather than buffering without limit.
+ *
+ * A write that fails stops the writing, and its exception is thrown from
+ * close().
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKAsyncMetricsSink implements AKMetricsSink {
+    /** The samples waiting when no capacity is given */
+    private static final int DEFAULT_CAPACITY = 8192;
+    /** Marks the end of the samples */
+    private static final AKRunMetrics.Sample END = new AKRunMetrics.Sample("", 0, 0, 0, -1, 0, -1, -1);
+
+    /** The sink written to */
+    private final AKMetricsSink target;
+    /** The samples waiting to be written */
+    private final BlockingQueue<AKRunMetrics.Sample> queue;
+    /** Writes the samples */
+    private final Thread writer;
+    /** The first write that failed */
+    private volatile IOException failure;
+    /** Whether close() has been called */
+    private boolean closed;
+
+    /**
+     * Write to a sink on a background thread
+     * @param target the sink
+     */
+    public AKAsyncMetricsSink(AKMetricsSink target) {
+        this(target, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Write to a sink on a background thread
+     * @param target the sink
+     * @param capacity the samples that can wait before recording blocks
+     */
+    public AKAsyncMetricsSink(AKMetricsSink target, int capacity) {
+        this.target = target;
+        this.queue = new ArrayBlockingQueue<AKRunMetrics.Sample>(capacity);
+        this.writer = new Thread(new Runnable() {
+            public void run() {
+                drain();
+            }
+        }, "ak-metrics-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue a sample for writing
+     * @see opt.test.AKMetricsSink#record(opt.test.AKRunMetrics.Sample)
+     */
+    public void record(AKRunMetrics.Sample sample) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        try {
+            queue.put(sample);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while queueing a sample", e);
+        }
+    }
+
+    /**
+     * Wait for the queued samples to be written, then close the sink
+     * @see opt.test.AKMetricsSink#close()
+     */
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean interrupted = false, ended = false;
+        while (true) {
+            try {
+                if (!ended) {
+                    queue.put(END);
+                    ended = true;
+                }
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                // the samples are still written, the interrupt is passed on after
+                interrupted = true;
+            }
+        }
+        try {
+            target.close();
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Write samples until the end marker, discarding them after a failure so recording never blocks for good
+     */
+    private void drain() {
+        while (true) {
+            AKRunMetrics.Sample sample;
+            try {
+                sample = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (sample == END) {
+                return;
+            }
+            if (failure == null) {
+                try {
+                    target.record(sample);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+    }
+}
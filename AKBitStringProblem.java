@@ -0,0 +1,74 @@
+package opt.test;
+
+import dist.Distribution;
+import opt.EvaluationFunction;
+import opt.HillClimbingProblem;
+import opt.ga.GeneticAlgorithmProblem;
+import shared.Instance;
+
+/**
+ * A binary string problem whose candidates are AKBitVector instances. The
+ * operators are the ones the discrete problems use with ranges of 2, worked
+ * on packed words: random() draws uniform bits, neighbor() and mutate() set
+ * one random position to a random bit like DiscreteChangeOneNeighbor and
+ * DiscreteChangeOneMutation, and mate() is SingleCrossOver copying whole words
+ * either side of the cut.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKBitStringProblem implements HillClimbingProblem, GeneticAlgorithmProblem {
+    /** The evaluation function */
+    private final EvaluationFunction ef;
+    /** The number of bits */
+    private final int n;
+
+    /**
+     * Make a new bit string problem
+     * @param ef the evaluation function
+     * @param n the number of bits
+     */
+    public AKBitStringProblem(EvaluationFunction ef, int n) {
+        this.ef = ef;
+        this.n = n;
+    }
+
+    /**
+     * @see opt.OptimizationProblem#value(shared.Instance)
+     */
+    public double value(Instance d) {
+        return ef.value(d);
+    }
+
+    /**
+     * @see opt.OptimizationProblem#random()
+     */
+    public Instance random() {
+        return new Instance(AKBitVector.random(n, Distribution.random));
+    }
+
+    /**
+     * @see opt.HillClimbingProblem#neighbor(shared.Instance)
+     */
+    public Instance neighbor(Instance d) {
+        Instance neighbor = (Instance) d.copy();
+        mutate(neighbor);
+        return neighbor;
+    }
+
+    /**
+     * @see opt.ga.GeneticAlgorithmProblem#mutate(shared.Instance)
+     */
+    public void mutate(Instance d) {
+        int i = Distribution.random.nextInt(n);
+        d.getData().set(i, Distribution.random.nextInt(2));
+    }
+
+    /**
+     * @see opt.ga.GeneticAlgorithmProblem#mate(shared.Instance, shared.Instance)
+     */
+    public Instance mate(Instance a, Instance b) {
+        int point = Distribution.random.nextInt(n + 1);
+        return new Instance(AKBitVector.crossover((AKBitVector) a.getData(), (AKBitVector) b.getData(), point));
+    }
+}
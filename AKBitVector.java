@@ -0,0 +1,195 @@
+package opt.test;
+
+import java.util.Random;
+
+import util.linalg.Vector;
+
+/**
+ * A binary vector packed 64 positions to a long. Every position reads as 0 or
+ * 1 and setting a position stores whether the value is nonzero, so it can
+ * stand in for the double backed vectors of a discrete instance with ranges of
+ * 2 at one sixty-fourth of the memory. Runs of equal bits are walked a word at
+ * a time, and every change bumps a version number so bookkeeping built from
+ * the bits can tell when it is out of date.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKBitVector extends Vector {
+    /** All bits of a word set */
+    private static final long ALL = -1L;
+
+    /** The number of positions */
+    private final int size;
+    /** The bits, position i at bit i % 64 of word i / 64, unused high bits clear */
+    private final long[] words;
+    /** Bumped on every change */
+    private int version;
+
+    /**
+     * Make a vector of zeros
+     * @param size the number of positions
+     */
+    public AKBitVector(int size) {
+        this(size, new long[words(size)]);
+    }
+
+    /**
+     * Make a vector over existing words
+     * @param size the number of positions
+     * @param words the bits, which the vector takes over
+     */
+    private AKBitVector(int size, long[] words) {
+        this.size = size;
+        this.words = words;
+    }
+
+    /**
+     * Make a vector of uniformly random bits
+     * @param size the number of positions
+     * @param random the random number generator
+     * @return the vector
+     */
+    public static AKBitVector random(int size, Random random) {
+        AKBitVector v = new AKBitVector(size);
+        for (int w = 0; w < v.words.length; w++) {
+            v.words[w] = random.nextLong();
+        }
+        v.clearTail();
+        return v;
+    }
+
+    /**
+     * Make the vector holding a's bits before a point and b's bits from it on,
+     * the child SingleCrossOver makes, copying whole words either side of the point
+     * @param a the first parent
+     * @param b the second parent
+     * @param point the first position taken from b
+     * @return the child
+     */
+    public static AKBitVector crossover(AKBitVector a, AKBitVector b, int point) {
+        long[] words = new long[a.words.length];
+        int w = point >>> 6;
+        System.arraycopy(a.words, 0, words, 0, w);
+        if (w < words.length) {
+            long low = (1L << (point & 63)) - 1;
+            words[w] = (a.words[w] & low) | (b.words[w] & ~low);
+            System.arraycopy(b.words, w + 1, words, w + 1, words.length - w - 1);
+        }
+        return new AKBitVector(a.size, words);
+    }
+
+    private static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * Keep the bits past the last position clear
+     */
+    private void clearTail() {
+        if ((size & 63) != 0) {
+            words[words.length - 1] &= (1L << (size & 63)) - 1;
+        }
+    }
+
+    /**
+     * @see util.linalg.Vector#size()
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @see util.linalg.Vector#get(int)
+     */
+    public double get(int i) {
+        return bit(i) ? 1 : 0;
+    }
+
+    /**
+     * @see util.linalg.Vector#set(int, double)
+     */
+    public void set(int i, double d) {
+        if (d != 0) {
+            words[i >>> 6] |= 1L << i;
+        } else {
+            words[i >>> 6] &= ~(1L << i);
+        }
+        version++;
+    }
+
+    /**
+     * Get a position as a boolean
+     * @param i the position
+     * @return true if the bit is set
+     */
+    public boolean bit(int i) {
+        return (words[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Invert a position
+     * @param i the position
+     */
+    public void flip(int i) {
+        words[i >>> 6] ^= 1L << i;
+        version++;
+    }
+
+    /**
+     * Find the first position at or after from holding a bit
+     * @param from the position to start at
+     * @param value the bit to look for
+     * @return the position, or size if there is none
+     */
+    public int next(int from, boolean value) {
+        if (from >= size) {
+            return size;
+        }
+        int w = from >>> 6;
+        long word = (value ? words[w] : ~words[w]) & (ALL << from);
+        while (word == 0) {
+            if (++w == words.length) {
+                return size;
+            }
+            word = value ? words[w] : ~words[w];
+        }
+        return Math.min(size, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Find the last position at or before from holding a bit
+     * @param from the position to start at
+     * @param value the bit to look for
+     * @return the position, or -1 if there is none
+     */
+    public int previous(int from, boolean value) {
+        if (from < 0) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = (value ? words[w] : ~words[w]) & (ALL >>> (63 - (from & 63)));
+        while (word == 0) {
+            if (--w < 0) {
+                return -1;
+            }
+            word = value ? words[w] : ~words[w];
+        }
+        return (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+    }
+
+    /**
+     * @see util.linalg.Vector#copy()
+     */
+    public AKBitVector copy() {
+        return new AKBitVector(size, words.clone());
+    }
+
+    /**
+     * Get the version, which changes whenever a bit is set or flipped
+     * @return the version
+     */
+    public int getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,164 @@
+package opt.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import opt.EvaluationFunction;
+import opt.OptimizationAlgorithm;
+
+/**
+ * Trains an optimization algorithm against a budget rather than an iteration
+ * count: until a wall clock deadline passes or until the evaluation function
+ * has been called a set number of times, counted by an
+ * AKCountingEvaluationFunction the algorithm's problem is built on. The budget
+ * is checked between iterations, so a run can go past it by one iteration.
+ *
+ * Along the way the algorithm's optimum is scored, without counting, at
+ * geometrically spaced times and evaluation counts, giving a trace of best
+ * fitness against elapsed time and against evaluations that lets algorithms
+ * with very different iteration costs be compared at equal cost.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKBudgetedRun {
+    /** The growth between trace points */
+    private static final double GROWTH = 1.5;
+    /** The first trace point in seconds */
+    private static final double FIRST_SECONDS = 0.001;
+    /** The first trace point in evaluations */
+    private static final long FIRST_EVALUATIONS = 100;
+
+    /** The name of the run */
+    private final String label;
+    /** The algorithm */
+    private final OptimizationAlgorithm oa;
+    /** Scores the optimum for the trace, uncounted */
+    private final EvaluationFunction scorer;
+    /** Counts the algorithm's evaluations */
+    private final AKCountingEvaluationFunction counter;
+    /** The wall clock budget in seconds */
+    private double deadline = Double.POSITIVE_INFINITY;
+    /** The evaluation budget */
+    private long maxEvaluations = Long.MAX_VALUE;
+
+    /**
+     * Make a new budgeted run
+     * @param label the name of the run
+     * @param oa the algorithm, whose problem scores through the counter
+     * @param scorer scores the optimum for the trace, without being counted
+     * @param counter counts the algorithm's evaluations
+     */
+    public AKBudgetedRun(String label, OptimizationAlgorithm oa, EvaluationFunction scorer,
+            AKCountingEvaluationFunction counter) {
+        this.label = label;
+        this.oa = oa;
+        this.scorer = scorer;
+        this.counter = counter;
+    }
+
+    /**
+     * Stop once a number of seconds have passed
+     * @param seconds the wall clock budget
+     */
+    public void setDeadline(double seconds) {
+        this.deadline = seconds;
+    }
+
+    /**
+     * Stop once the evaluation function has been called a number of times
+     * @param maxEvaluations the evaluation budget
+     */
+    public void setMaxEvaluations(long maxEvaluations) {
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    /**
+     * Train until the budget runs out
+     * @return the trace, ending with the point the budget ran out at
+     */
+    public List<Point> run() {
+        List<Point> trace = new ArrayList<Point>();
+        long start = System.nanoTime(), startCalls = counter.getCalls();
+        double nextSeconds = FIRST_SECONDS;
+        long nextEvaluations = FIRST_EVALUATIONS;
+        int iterations = 0;
+        while (true) {
+            oa.train();
+            iterations++;
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long evaluations = counter.getCalls() - startCalls;
+            boolean done = seconds >= deadline || evaluations >= maxEvaluations;
+            if (done || seconds >= nextSeconds || evaluations >= nextEvaluations) {
+                long scoring = System.nanoTime();
+                trace.add(new Point(seconds, evaluations, iterations, scorer.value(oa.getOptimal())));
+                // scoring the trace point is not part of the budget
+                start += System.nanoTime() - scoring;
+                while (nextSeconds <= seconds) {
+                    nextSeconds *= GROWTH;
+                }
+                while (nextEvaluations <= evaluations) {
+                    nextEvaluations = (long) Math.ceil(nextEvaluations * GROWTH);
+                }
+            }
+            if (done) {
+                return trace;
+            }
+        }
+    }
+
+    /**
+     * Lay out a trace as a table
+     * @param trace the trace
+     * @return the table, one row per point
+     */
+    public String table(List<Point> trace) {
+        StringBuilder sb = new StringBuilder(label).append("\nseconds\tevaluations\titerations\tbest\n");
+        for (Point p : trace) {
+            sb.append(String.format("%.4f\t%d\t%d\t%s%n", p.getSeconds(), p.getEvaluations(), p.getIterations(),
+                    p.getBest()));
+        }
+        return sb.toString();
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * The best fitness at one point of a run
+     */
+    public static class Point {
+        /** The seconds since the run started */
+        private final double seconds;
+        /** The evaluations since the run started */
+        private final long evaluations;
+        /** The iterations since the run started */
+        private final int iterations;
+        /** The fitness of the optimum */
+        private final double best;
+
+        public Point(double seconds, long evaluations, int iterations, double best) {
+            this.seconds = seconds;
+            this.evaluations = evaluations;
+            this.iterations = iterations;
+            this.best = best;
+        }
+
+        public double getSeconds() {
+            return seconds;
+        }
+
+        public long getEvaluations() {
+            return evaluations;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public double getBest() {
+            return best;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package opt.test;
+
+import shared.Instance;
+
+/**
+ * Set one position to a new value, the move DiscreteChangeOneNeighbor makes
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKChangeOneMove implements AKMove {
+    /** The position */
+    private final int i;
+    /** The new value */
+    private final int value;
+
+    /**
+     * Make a new change one move
+     * @param i the position
+     * @param value the new value
+     */
+    public AKChangeOneMove(int i, int value) {
+        this.i = i;
+        this.value = value;
+    }
+
+    /**
+     * @see opt.test.AKMove#apply(shared.Instance)
+     */
+    public void apply(Instance d) {
+        d.getData().set(i, value);
+    }
+
+    public int getI() {
+        return i;
+    }
+
+    public int getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,32 @@
+package opt.test;
+
+import dist.Distribution;
+import shared.Instance;
+
+/**
+ * Proposes setting a random position to a random value in its range, drawn
+ * the way DiscreteChangeOneNeighbor draws them
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKChangeOneMoveGenerator implements AKMoveGenerator {
+    /** The range of each position */
+    private final int[] ranges;
+
+    /**
+     * Make a new change one move generator
+     * @param ranges the number of values each position can take
+     */
+    public AKChangeOneMoveGenerator(int[] ranges) {
+        this.ranges = ranges;
+    }
+
+    /**
+     * @see opt.test.AKMoveGenerator#propose(shared.Instance)
+     */
+    public AKMove propose(Instance d) {
+        int i = Distribution.random.nextInt(ranges.length);
+        return new AKChangeOneMove(i, Distribution.random.nextInt(ranges[i]));
+    }
+}
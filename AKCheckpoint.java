@@ -0,0 +1,211 @@
+package opt.test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import shared.Instance;
+
+/**
+ * Reads and writes checkpoint files, and the instances and arrays inside
+ * them. A checkpoint is written to a temporary file and moved over the old
+ * one, so a run killed while writing leaves the previous checkpoint whole.
+ * Packed bit instances are written a bit per bit, others a double per value.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKCheckpoint {
+    /** Marks a checkpoint file */
+    private static final int MAGIC = 0x414B4350;
+    /** The version of the format */
+    private static final int VERSION = 1;
+    /** Tags an instance of doubles */
+    private static final byte DENSE = 0;
+    /** Tags an instance of packed bits */
+    private static final byte BITS = 1;
+
+    /**
+     * Write a checkpoint, replacing the old one atomically
+     * @param file the checkpoint file
+     * @param state the state to write
+     * @throws IOException if it can't be written
+     */
+    public static void save(File file, AKCheckpointable state) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            state.writeState(out);
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Read a checkpoint into an object built the way the one saved was
+     * @param file the checkpoint file
+     * @param state the object to restore
+     * @throws IOException if it can't be read or is not a checkpoint
+     */
+    public static void restore(File file, AKCheckpointable state) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a checkpoint");
+            }
+            state.readState(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write an instance's values
+     * @param out the output
+     * @param d the instance
+     * @throws IOException if it can't be written
+     */
+    public static void writeInstance(DataOutputStream out, Instance d) throws IOException {
+        int n = d.size();
+        out.writeInt(n);
+        if (d.getData() instanceof AKBitVector) {
+            AKBitVector bits = (AKBitVector) d.getData();
+            out.writeByte(BITS);
+            for (int w = 0; w < n; w += 64) {
+                long word = 0;
+                for (int i = w; i < Math.min(n, w + 64); i++) {
+                    if (bits.bit(i)) {
+                        word |= 1L << (i - w);
+                    }
+                }
+                out.writeLong(word);
+            }
+        } else {
+            out.writeByte(DENSE);
+            for (int i = 0; i < n; i++) {
+                out.writeDouble(d.getContinuous(i));
+            }
+        }
+    }
+
+    /**
+     * Read an instance written by writeInstance()
+     * @param in the input
+     * @return the instance
+     * @throws IOException if it can't be read
+     */
+    public static Instance readInstance(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        byte tag = in.readByte();
+        if (tag == BITS) {
+            AKBitVector bits = new AKBitVector(n);
+            for (int w = 0; w < n; w += 64) {
+                long word = in.readLong();
+                for (int i = w; i < Math.min(n, w + 64); i++) {
+                    if ((word >>> (i - w) & 1) != 0) {
+                        bits.set(i, 1);
+                    }
+                }
+            }
+            return new Instance(bits);
+        } else if (tag != DENSE) {
+            throw new IOException("unknown instance tag " + tag);
+        }
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = in.readDouble();
+        }
+        return new Instance(values);
+    }
+
+    /**
+     * Write instances
+     * @param out the output
+     * @param instances the instances
+     * @throws IOException if they can't be written
+     */
+    public static void writeInstances(DataOutputStream out, Instance[] instances) throws IOException {
+        out.writeInt(instances.length);
+        for (Instance d : instances) {
+            writeInstance(out, d);
+        }
+    }
+
+    /**
+     * Read instances written by writeInstances()
+     * @param in the input
+     * @return the instances
+     * @throws IOException if they can't be read
+     */
+    public static Instance[] readInstances(DataInputStream in) throws IOException {
+        Instance[] instances = new Instance[in.readInt()];
+        for (int i = 0; i < instances.length; i++) {
+            instances[i] = readInstance(in);
+        }
+        return instances;
+    }
+
+    /**
+     * Write an array of doubles
+     * @param out the output
+     * @param values the array
+     * @throws IOException if it can't be written
+     */
+    public static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    /**
+     * Read an array written by writeDoubles()
+     * @param in the input
+     * @return the array
+     * @throws IOException if it can't be read
+     */
+    public static double[] readDoubles(DataInputStream in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Write an array of ints
+     * @param out the output
+     * @param values the array
+     * @throws IOException if it can't be written
+     */
+    public static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Read an array written by writeInts()
+     * @param in the input
+     * @return the array
+     * @throws IOException if it can't be read
+     */
+    public static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,30 @@
+package opt.test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Something whose training state can be written to a checkpoint and read back
+ * into an object built the same way, so a run can go on where it stopped.
+ * Only the state that changes as it trains is written; the problem and the
+ * settings come from the constructor.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public interface AKCheckpointable {
+    /**
+     * Write the training state
+     * @param out the output
+     * @throws IOException if it can't be written
+     */
+    void writeState(DataOutputStream out) throws IOException;
+
+    /**
+     * Replace the training state with one written by writeState()
+     * @param in the input
+     * @throws IOException if it can't be read
+     */
+    void readState(DataInputStream in) throws IOException;
+}
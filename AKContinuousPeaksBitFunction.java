@@ -0,0 +1,189 @@
+package opt.test;
+
+import java.util.Arrays;
+
+import shared.Instance;
+import util.linalg.Vector;
+
+/**
+ * The continuous peaks function over AKBitVector candidates: the longest run
+ * of either bit, plus N when the longest runs of 0s and of 1s are both longer
+ * than T, as ContinuousPeaksEvaluationFunction scores it. value() walks the
+ * runs a word at a time. Setting one bit is scored from a histogram of the run
+ * lengths of the candidate the moves are made on, which only has to look at the
+ * run holding the bit and the runs either side of it, so the cost follows the
+ * size of those runs rather than N.
+ *
+ * Candidates that are not bit vectors are scored a position at a time.
+ * value() keeps no state and can be shared between threads; the histogram
+ * behind valueAfter() and apply() belongs to one search at a time.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKContinuousPeaksBitFunction implements AKDeltaEvaluationFunction {
+    /** The t value */
+    private final int t;
+    /** The candidate the histogram describes */
+    private AKBitVector bound;
+    /** The version of the candidate when the histogram was last brought up to date */
+    private int boundVersion;
+    /** The number of runs of each length, indexed by bit and then length */
+    private int[][] counts;
+    /** The longest run of each bit */
+    private final int[] max = new int[2];
+
+    /**
+     * Make a new continuous peaks function
+     * @param t the t value
+     */
+    public AKContinuousPeaksBitFunction(int t) {
+        this.t = t;
+    }
+
+    /**
+     * @see opt.EvaluationFunction#value(shared.Instance)
+     */
+    public double value(Instance d) {
+        Vector data = d.getData();
+        int n = data.size();
+        int max0 = 0, max1 = 0;
+        if (data instanceof AKBitVector) {
+            AKBitVector bits = (AKBitVector) data;
+            for (int pos = 0; pos < n;) {
+                boolean b = bits.bit(pos);
+                int end = bits.next(pos, !b);
+                if (b) {
+                    max1 = Math.max(max1, end - pos);
+                } else {
+                    max0 = Math.max(max0, end - pos);
+                }
+                pos = end;
+            }
+        } else {
+            int run = 0;
+            for (int i = 0; i < n; i++) {
+                run = i > 0 && data.get(i) == data.get(i - 1) ? run + 1 : 1;
+                if (data.get(i) == 1) {
+                    max1 = Math.max(max1, run);
+                } else {
+                    max0 = Math.max(max0, run);
+                }
+            }
+        }
+        return score(max0, max1, n);
+    }
+
+    private double score(int max0, int max1, int n) {
+        return Math.max(max0, max1) + (max0 > t && max1 > t ? n : 0);
+    }
+
+    /**
+     * @see opt.test.AKDeltaEvaluationFunction#supports(opt.test.AKMove)
+     */
+    public boolean supports(AKMove move) {
+        return move instanceof AKChangeOneMove;
+    }
+
+    /**
+     * @see opt.test.AKDeltaEvaluationFunction#valueAfter(shared.Instance, double, opt.test.AKMove)
+     */
+    public double valueAfter(Instance d, double value, AKMove move) {
+        return change(d, (AKChangeOneMove) move, value, false);
+    }
+
+    /**
+     * Set the bit, keeping the run length histogram current
+     * @see opt.test.AKDeltaEvaluationFunction#apply(shared.Instance, opt.test.AKMove)
+     */
+    public void apply(Instance d, AKMove move) {
+        change(d, (AKChangeOneMove) move, 0, true);
+    }
+
+    /**
+     * Score a single bit change from the runs around it, and make it if asked
+     */
+    private double change(Instance d, AKChangeOneMove move, double value, boolean commit) {
+        Vector data = d.getData();
+        int i = move.getI();
+        if (!(data instanceof AKBitVector)) {
+            if (commit) {
+                move.apply(d);
+                return 0;
+            }
+            Instance changed = (Instance) d.copy();
+            move.apply(changed);
+            return value(changed);
+        }
+        AKBitVector bits = (AKBitVector) data;
+        boolean b = bits.bit(i);
+        if (b == (move.getValue() != 0)) {
+            return value;
+        }
+        bind(bits);
+        int n = bits.size();
+        int from = b ? 1 : 0, to = 1 - from;
+
+        // the run of b holding i is split around i, and i joins any run of !b it now touches
+        int start = bits.previous(i, !b) + 1;
+        int end = bits.next(i, !b);
+        int left = i > start || start == 0 ? 0 : start - 1 - bits.previous(start - 1, b);
+        int right = i < end - 1 || end == n ? 0 : bits.next(end, b) - end;
+        int before = i - start, after = end - i - 1, merged = left + 1 + right;
+
+        int maxFrom = max[from];
+        if (end - start == maxFrom && counts[from][maxFrom] == 1) {
+            // the only longest run is going; look for the next longest no further down than its parts
+            int floor = Math.max(before, after);
+            maxFrom--;
+            while (maxFrom > floor && counts[from][maxFrom] == 0) {
+                maxFrom--;
+            }
+        }
+        int maxTo = Math.max(max[to], merged);
+
+        if (commit) {
+            // slot 0 collects the empty parts and missing neighbors and is never read
+            counts[from][end - start]--;
+            counts[from][before]++;
+            counts[from][after]++;
+            counts[to][left]--;
+            counts[to][right]--;
+            counts[to][merged]++;
+            max[from] = maxFrom;
+            max[to] = maxTo;
+            bits.flip(i);
+            boundVersion = bits.getVersion();
+        }
+        return b ? score(maxTo, maxFrom, n) : score(maxFrom, maxTo, n);
+    }
+
+    /**
+     * Bring the histogram up to date with a candidate, rebuilding it if the
+     * candidate is new or was changed other than through apply()
+     */
+    private void bind(AKBitVector bits) {
+        if (bits == bound && bits.getVersion() == boundVersion) {
+            return;
+        }
+        int n = bits.size();
+        if (counts == null || counts[0].length != n + 1) {
+            counts = new int[2][n + 1];
+        } else {
+            Arrays.fill(counts[0], 0);
+            Arrays.fill(counts[1], 0);
+        }
+        max[0] = 0;
+        max[1] = 0;
+        for (int pos = 0; pos < n;) {
+            boolean b = bits.bit(pos);
+            int end = bits.next(pos, !b);
+            int bit = b ? 1 : 0;
+            counts[bit][end - pos]++;
+            max[bit] = Math.max(max[bit], end - pos);
+            pos = end;
+        }
+        bound = bits;
+        boundVersion = bits.getVersion();
+    }
+}
@@ -1,30 +1,15 @@
 package opt.test;
 
+import java.io.IOException;
 import java.util.Arrays;
 
-import dist.DiscreteDependencyTree;
 import dist.DiscreteUniformDistribution;
 import dist.Distribution;
 
-import opt.DiscreteChangeOneNeighbor;
 import opt.EvaluationFunction;
-import opt.GenericHillClimbingProblem;
-import opt.HillClimbingProblem;
-import opt.NeighborFunction;
-import opt.RandomizedHillClimbing;
-import opt.SimulatedAnnealing;
-import opt.example.*;
-import opt.ga.CrossoverFunction;
-import opt.ga.DiscreteChangeOneMutation;
-import opt.ga.SingleCrossOver;
-import opt.ga.GenericGeneticAlgorithmProblem;
-import opt.ga.GeneticAlgorithmProblem;
-import opt.ga.MutationFunction;
-import opt.ga.StandardGeneticAlgorithm;
+import opt.OptimizationAlgorithm;
 import opt.prob.GenericProbabilisticOptimizationProblem;
-import opt.prob.MIMIC;
 import opt.prob.ProbabilisticOptimizationProblem;
-import shared.FixedIterationTrainer;
 
 /**
  * Modified to ContinuousPeaksTest
@@ -35,19 +20,37 @@ public class AKContinuousPeaksTest {
     private static final int N = 500;
     /** The t value */
     private static final int T = N / 2;
-
-    public static void main(String[] args) {
+    /** The best value possible, with both runs longer than T if they fit */
+    private static final double OPTIMUM = 2 * T + 2 <= N ? 2 * N - T - 1 : N;
+    /** The steps each restarting climber takes per round */
+    private static final int ROUND = 1000;
+    /** The steps without improvement before a climber restarts */
+    private static final int PATIENCE = 5000;
+    /** The rounds before the restarting climbers give up on the optimum */
+    private static final int MAX_ROUNDS = 200;
+    /** The iterations without improvement before RHC and SA stop early, scored every CHECK_INTERVAL */
+    private static final int STALL_ITERATIONS = 20000, CHECK_INTERVAL = 100;
+    /** The generations without improvement before GA and MIMIC stop early */
+    private static final int STALL_GENERATIONS = 100;
+    /** The number of threads used to score GA populations and MIMIC samples */
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    public static void main(String[] args) throws IOException {
         int[] ranges = new int[N];
         Arrays.fill(ranges, 2);
-        EvaluationFunction ef = new ContinuousPeaksEvaluationFunction(T);
+        // rhc, sa and ga work on packed bits, with single bit changes scored from the runs they touch
+        final AKContinuousPeaksBitFunction ef = new AKContinuousPeaksBitFunction(T);
+        // with -Dmetrics=<file.csv|file.json> each run's time series is written there, its evaluations counted
+        String metricsPath = System.getProperty("metrics");
+        AKMetricsSink sink = metricsPath == null ? null : AKRunMetrics.open(metricsPath);
+        AKCountingEvaluationFunction counted = sink == null ? null : new AKCountingEvaluationFunction(ef);
+        AKDeltaEvaluationFunction searchEf = counted == null ? ef : counted;
+        AKBitStringProblem bsp = new AKBitStringProblem(searchEf, N);
+        AKMoveGenerator moves = new AKChangeOneMoveGenerator(ranges);
+        // mimic fits its dependency tree to the usual discrete instances, which ef also scores
         Distribution odd = new DiscreteUniformDistribution(ranges);
-        NeighborFunction nf = new DiscreteChangeOneNeighbor(ranges);
-        MutationFunction mf = new DiscreteChangeOneMutation(ranges);
-        CrossoverFunction cf = new SingleCrossOver();
-        Distribution df = new DiscreteDependencyTree(.1, ranges);
-        HillClimbingProblem hcp = new GenericHillClimbingProblem(ef, odd, nf);
-        GeneticAlgorithmProblem gap = new GenericGeneticAlgorithmProblem(ef, odd, mf, cf);
-        ProbabilisticOptimizationProblem pop = new GenericProbabilisticOptimizationProblem(ef, odd, df);
+        Distribution df = new AKParallelDependencyTree(.1, ranges, THREADS);
+        ProbabilisticOptimizationProblem pop = new GenericProbabilisticOptimizationProblem(searchEf, odd, df);
 
         double[][][] paramGrid = new double[][][] {
             {
@@ -66,55 +69,87 @@ public class AKContinuousPeaksTest {
             }
         };
 
-        FixedIterationTrainer fit;
+        // each optimizer runs once up to its largest iteration count and is scored at every milestone
 
         // RHC
-        for (double iter : paramGrid[3][0]) {
-            // long starttime = System.currentTimeMillis();
-            RandomizedHillClimbing rhc = new RandomizedHillClimbing(hcp);
-            fit = new FixedIterationTrainer(rhc, (int) iter);
-            fit.train();
-            System.out.println(iter + "iter, RHC: " + ef.value(rhc.getOptimal()));
-            // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
-        }
+        // long starttime = System.currentTimeMillis();
+        final AKDeltaSearch rhc = new AKDeltaSearch(bsp, searchEf, moves);
+        OptimizationAlgorithm rhcRecorded = recorded("RHC", rhc, ef, counted, sink, CHECK_INTERVAL);
+        final AKConvergenceTrainer rhcRun = AKConvergenceTrainer.onPlateau(rhcRecorded, ef, STALL_ITERATIONS, CHECK_INTERVAL);
+        new AKMilestoneTrainer(rhcRun, paramGrid[3][0], new AKMilestoneTrainer.Listener() {
+            public void milestone(int iter) {
+                System.out.println((double) iter + "iter, RHC: " + ef.value(rhc.getOptimal()));
+            }
+        }).train();
+        finish(rhcRecorded);
+        System.out.println("RHC " + rhcRun);
+        // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
         System.out.println("============================");
-        double t0 = 2500, coolingRate = 0.25;
-
-        for (double iter : paramGrid[3][0]) {
-
-            // // SA grid search
-            // for (t0 : paramGrid[0][0]) {
-            //     for (coolingRate : paramGrid[0][1]) {
-            // starttime = System.currentTimeMillis();
-            SimulatedAnnealing sa = new SimulatedAnnealing(t0, coolingRate, hcp);
-            fit = new FixedIterationTrainer(sa, (int) iter);
-            fit.train();
-            System.out.println("\n" + iter + " iter, SA || t0: " + t0 + ", coolingRate: " + coolingRate + "\n\t"
-                    + ef.value(sa.getOptimal()));
-            // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
-            //     }
-            // }
+
+        // a climber per core, each restarting when it stalls, until one reaches the optimum
+        final AKRestartHillClimbing portfolio = new AKRestartHillClimbing(THREADS, ROUND, PATIENCE, bsp,
+                new AKPopulationEvaluator.Factory() {
+                    public EvaluationFunction create() {
+                        return new AKContinuousPeaksBitFunction(T);
+                    }
+                }, moves);
+        portfolio.setTarget(OPTIMUM);
+        long start = System.nanoTime();
+        int rounds = 0;
+        while (!portfolio.reachedTarget() && rounds < MAX_ROUNDS) {
+            portfolio.train();
+            rounds++;
         }
+        portfolio.shutdown();
+        System.out.println((double) rounds * ROUND + " iter per climber, restarting RHC || climbers: " + THREADS
+                + ", patience: " + PATIENCE + ", restarts: " + portfolio.getRestarts() + "\n\t"
+                + ef.value(portfolio.getOptimal()) + " of " + OPTIMUM + " in "
+                + (System.nanoTime() - start) / Math.pow(10, 9) + " seconds");
+        System.out.println("============================");
+        final double t0 = 2500, coolingRate = 0.25;
+
+        // // SA grid search
+        // for (double t0 : paramGrid[0][0]) {
+        //     for (double coolingRate : paramGrid[0][1]) {
+        // starttime = System.currentTimeMillis();
+        final AKDeltaSearch sa = new AKDeltaSearch(t0, coolingRate, bsp, searchEf, moves);
+        OptimizationAlgorithm saRecorded = recorded("SA", sa, ef, counted, sink, CHECK_INTERVAL);
+        final AKConvergenceTrainer saRun = AKConvergenceTrainer.onPlateau(saRecorded, ef, STALL_ITERATIONS, CHECK_INTERVAL);
+        new AKMilestoneTrainer(saRun, paramGrid[3][0], new AKMilestoneTrainer.Listener() {
+            public void milestone(int iter) {
+                System.out.println("\n" + (double) iter + " iter, SA || t0: " + t0 + ", coolingRate: " + coolingRate + "\n\t"
+                        + ef.value(sa.getOptimal()));
+            }
+        }).train();
+        finish(saRecorded);
+        System.out.println("SA " + saRun);
+        // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
+        //     }
+        // }
 
 
         System.out.println("============================");
-        double popSize = 250, toMate = 0.05, toMutate = 0.03;
-
-        for (double iter : paramGrid[3][1]) {
-            // GA grid search
-            // for (double popSize : paramGrid[1][0]) {
-            //     for (double toMate : paramGrid[1][1]) {
-            //         for (double toMutate: paramGrid[1][2]) {
-            StandardGeneticAlgorithm ga = new StandardGeneticAlgorithm((int)popSize, (int) (popSize * toMate),
-                    (int) (popSize * toMutate), gap);
-            fit = new FixedIterationTrainer(ga, (int) iter);
-            fit.train();
-            System.out.println("\n" + iter + " iter, GA || popSize: " + popSize + ", toMate: " + toMate + ", toMutate: "
-                    + toMutate + "\n\t" + ef.value(ga.getOptimal()));
-            //         }
-            //     }
-            // }
-        }
+        final double popSize = 250, toMate = 0.05, toMutate = 0.03;
+
+        // GA grid search
+        // for (double popSize : paramGrid[1][0]) {
+        //     for (double toMate : paramGrid[1][1]) {
+        //         for (double toMutate: paramGrid[1][2]) {
+        final AKParallelGeneticAlgorithm ga = new AKParallelGeneticAlgorithm((int)popSize, (int) (popSize * toMate),
+                (int) (popSize * toMutate), bsp, new AKPopulationEvaluator(searchEf, THREADS));
+        OptimizationAlgorithm gaRecorded = recorded("GA", ga, ef, counted, sink, 1);
+        final AKConvergenceTrainer gaRun = AKConvergenceTrainer.onPlateau(gaRecorded, ef, STALL_GENERATIONS, 1);
+        new AKMilestoneTrainer(gaRun, paramGrid[3][1], new AKMilestoneTrainer.Listener() {
+            public void milestone(int iter) {
+                System.out.println("\n" + (double) iter + " iter, GA || popSize: " + popSize + ", toMate: " + toMate
+                        + ", toMutate: " + toMutate + "\n\t" + ef.value(ga.getOptimal()));
+            }
+        }).train();
+        finish(gaRecorded);
+        System.out.println("GA " + gaRun);
+        //         }
+        //     }
+        // }
 
         // StandardGeneticAlgorithm ga = new StandardGeneticAlgorithm(200, 100, 10, gap);
         // fit = new FixedIterationTrainer(ga, 1000);
@@ -122,23 +157,54 @@ public class AKContinuousPeaksTest {
         // System.out.println("GA: " + ef.value(ga.getOptimal()));
 
         System.out.println("============================");
-        double samples = 150, toKeep = 10;
-        for (double iter : paramGrid[3][1]) {
-            // MIMIC grid search
-            // for (samples: paramGrid[2][0]) {
-            //     for (toKeep: paramGrid[2][1]) {
-            MIMIC mimic = new MIMIC((int) samples, (int) toKeep, pop);
-            fit = new FixedIterationTrainer(mimic, (int) iter);
-            fit.train();
-            System.out.println("\n" + iter + " iter, MIMIC || samples: " + samples + ", toKeep: " + toKeep + "\n\t"
-                    + ef.value(mimic.getOptimal()));
-            //     }
-            // }
-        }
+        final double samples = 150, toKeep = 10;
+        // MIMIC grid search
+        // for (double samples : paramGrid[2][0]) {
+        //     for (double toKeep : paramGrid[2][1]) {
+        final AKParallelMIMIC mimic = new AKParallelMIMIC((int) samples, (int) toKeep, pop,
+                new AKPopulationEvaluator(searchEf, THREADS));
+        OptimizationAlgorithm mimicRecorded = recorded("MIMIC", mimic, ef, counted, sink, 1);
+        final AKConvergenceTrainer mimicRun = AKConvergenceTrainer.onPlateau(mimicRecorded, ef, STALL_GENERATIONS, 1);
+        new AKMilestoneTrainer(mimicRun, paramGrid[3][1], new AKMilestoneTrainer.Listener() {
+            public void milestone(int iter) {
+                System.out.println("\n" + (double) iter + " iter, MIMIC || samples: " + samples + ", toKeep: " + toKeep
+                        + "\n\t" + ef.value(mimic.getOptimal()));
+            }
+        }).train();
+        finish(mimicRecorded);
+        System.out.println("MIMIC " + mimicRun);
+        //     }
+        // }
 
         // MIMIC mimic = new MIMIC(200, 20, pop);
         // fit = new FixedIterationTrainer(mimic, 1000);
         // fit.train();
         // System.out.println("MIMIC: " + ef.value(mimic.getOptimal()));
+        if (sink != null) {
+            sink.close();
+        }
+    }
+
+    /**
+     * Record a run's time series to the sink, sampled as often as the run is checked for convergence
+     * @return the algorithm to train, unchanged when there is no sink
+     */
+    private static OptimizationAlgorithm recorded(String run, OptimizationAlgorithm oa, EvaluationFunction ef,
+            AKCountingEvaluationFunction counted, AKMetricsSink sink, int interval) {
+        if (sink == null) {
+            return oa;
+        }
+        AKRunMetrics metrics = new AKRunMetrics(run, oa, ef, counted, sink);
+        metrics.setInterval(interval);
+        return metrics;
+    }
+
+    /**
+     * End a recorded run's time series where the run stopped, before the next run's evaluations are counted
+     */
+    private static void finish(OptimizationAlgorithm oa) {
+        if (oa instanceof AKRunMetrics) {
+            ((AKRunMetrics) oa).finish();
+        }
     }
 }
@@ -0,0 +1,232 @@
+package opt.test;
+
+import opt.EvaluationFunction;
+import opt.OptimizationAlgorithm;
+
+/**
+ * Trains an optimization algorithm until it stops getting better. Every check
+ * interval the algorithm's current optimum is scored, and the run stops when
+ * the best score reaches a target, when it has not improved for a number of
+ * iterations, when it has improved by less than a relative threshold over a
+ * window of iterations, or at a maximum number of iterations, whichever comes
+ * first. The reason and the iteration it stopped at are kept for reporting.
+ *
+ * Inside an AKMilestoneTrainer the run stops at the same point, and the
+ * milestones past it are reported against the converged optimum without
+ * training any further.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKConvergenceTrainer implements AKSteppedTrainer {
+    /** Why a run stopped */
+    public enum StopReason {
+        /** Still running */
+        NONE,
+        /** The maximum number of iterations was run */
+        MAX_ITERATIONS,
+        /** The best score reached the target */
+        TARGET,
+        /** The best score did not improve for the patience */
+        PLATEAU,
+        /** The best score improved by less than the threshold over the window */
+        MIN_IMPROVEMENT
+    }
+
+    /** The algorithm being trained */
+    private final OptimizationAlgorithm oa;
+    /** Scores the algorithm's optimum */
+    private final EvaluationFunction ef;
+    /** The most iterations to run */
+    private int maxIterations = Integer.MAX_VALUE;
+    /** The score to stop at */
+    private double target = Double.POSITIVE_INFINITY;
+    /** The iterations without improvement to stop after, or 0 to never stop on a plateau */
+    private int patience;
+    /** The iterations the relative improvement is measured over, or 0 to never stop on it */
+    private int window;
+    /** The smallest relative improvement over the window to keep going */
+    private double minImprovement;
+    /** The iterations between scores */
+    private int checkInterval = 1;
+
+    /** The iterations run */
+    private int iterations;
+    /** The best score */
+    private double best = Double.NEGATIVE_INFINITY;
+    /** The iteration the best score last improved at */
+    private int improvedAt;
+    /** The best score at the start of each window, a ring of window / checkInterval + 1 checks */
+    private double[] history;
+    /** The checks made */
+    private int checks;
+    /** Why the run stopped */
+    private StopReason reason = StopReason.NONE;
+
+    /**
+     * Make a new convergence trainer
+     * @param oa the algorithm to train
+     * @param ef scores the algorithm's optimum
+     */
+    public AKConvergenceTrainer(OptimizationAlgorithm oa, EvaluationFunction ef) {
+        this.oa = oa;
+        this.ef = ef;
+    }
+
+    /**
+     * Make a trainer that stops once the optimum stops improving
+     * @param oa the algorithm to train
+     * @param ef scores the algorithm's optimum
+     * @param patience the iterations without improvement to stop after
+     * @param checkInterval the iterations between scores
+     * @return the trainer
+     */
+    public static AKConvergenceTrainer onPlateau(OptimizationAlgorithm oa, EvaluationFunction ef, int patience,
+            int checkInterval) {
+        AKConvergenceTrainer trainer = new AKConvergenceTrainer(oa, ef);
+        trainer.setPatience(patience);
+        trainer.setCheckInterval(checkInterval);
+        return trainer;
+    }
+
+    /**
+     * Stop after a number of iterations
+     * @param maxIterations the most iterations to run
+     */
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Stop once the best score reaches a value
+     * @param target the score to stop at
+     */
+    public void setTarget(double target) {
+        this.target = target;
+    }
+
+    /**
+     * Stop when the best score has not improved for a number of iterations
+     * @param patience the iterations without improvement, or 0 to never stop on a plateau
+     */
+    public void setPatience(int patience) {
+        this.patience = patience;
+    }
+
+    /**
+     * Stop when the best score improves by less than a fraction over a window of iterations
+     * @param window the iterations the improvement is measured over, or 0 to never stop on it
+     * @param minImprovement the smallest relative improvement to keep going
+     */
+    public void setMinImprovement(int window, double minImprovement) {
+        this.window = window;
+        this.minImprovement = minImprovement;
+    }
+
+    /**
+     * Score the optimum every so many iterations, for algorithms whose
+     * iterations are cheap next to scoring
+     * @param checkInterval the iterations between scores
+     */
+    public void setCheckInterval(int checkInterval) {
+        this.checkInterval = Math.max(1, checkInterval);
+    }
+
+    /**
+     * Train until a stopping rule fires
+     * @return the best score
+     * @see shared.Trainer#train()
+     */
+    public double train() {
+        while (iterate()) {
+            // iterate() does the work
+        }
+        return best;
+    }
+
+    /**
+     * Run one iteration unless the run has already stopped
+     * @return true if the run should go on
+     * @see opt.test.AKSteppedTrainer#iterate()
+     */
+    public boolean iterate() {
+        if (reason != StopReason.NONE) {
+            return false;
+        }
+        if (iterations >= maxIterations) {
+            reason = StopReason.MAX_ITERATIONS;
+            return false;
+        }
+        oa.train();
+        iterations++;
+        if (iterations % checkInterval == 0 || iterations == maxIterations) {
+            check();
+        }
+        return reason == StopReason.NONE;
+    }
+
+    /**
+     * Score the optimum and apply the stopping rules
+     */
+    private void check() {
+        double value = ef.value(oa.getOptimal());
+        if (value > best) {
+            best = value;
+            improvedAt = iterations;
+        }
+        if (window > 0) {
+            int span = Math.max(1, window / checkInterval);
+            if (history == null) {
+                history = new double[span + 1];
+            }
+            history[checks % history.length] = best;
+            if (checks >= span) {
+                double before = history[(checks - span) % history.length];
+                if (best - before < minImprovement * Math.abs(before)) {
+                    reason = StopReason.MIN_IMPROVEMENT;
+                }
+            }
+        }
+        checks++;
+        if (best >= target) {
+            reason = StopReason.TARGET;
+        } else if (patience > 0 && iterations - improvedAt >= patience) {
+            reason = StopReason.PLATEAU;
+        } else if (iterations >= maxIterations) {
+            reason = StopReason.MAX_ITERATIONS;
+        }
+    }
+
+    /**
+     * Get the number of iterations run
+     * @return the iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Get the best score seen at a check
+     * @return the best score
+     */
+    public double getBest() {
+        return best;
+    }
+
+    /**
+     * Get why the run stopped
+     * @return the reason, NONE while it is still going
+     */
+    public StopReason getStopReason() {
+        return reason;
+    }
+
+    /**
+     * Describe where and why the run stopped
+     * @return the description
+     */
+    public String toString() {
+        return reason == StopReason.NONE ? "running, " + iterations + " iterations"
+                : "stopped after " + iterations + " iterations: " + reason;
+    }
+}
@@ -0,0 +1,110 @@
+package opt.test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import opt.EvaluationFunction;
+import shared.Instance;
+
+/**
+ * An evaluation function that counts the calls made to the one it wraps. A
+ * move scored by valueAfter() counts as a call like a full value(). Wrappers
+ * can share a counter, so the per thread copies of a stateful function handed
+ * out by an AKPopulationEvaluator.Factory add up to one total.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKCountingEvaluationFunction implements AKDeltaEvaluationFunction {
+    /** The function being counted */
+    private final EvaluationFunction ef;
+    /** The count, possibly shared */
+    private final AtomicLong calls;
+
+    /**
+     * Count the calls to a function
+     * @param ef the function
+     */
+    public AKCountingEvaluationFunction(EvaluationFunction ef) {
+        this(ef, new AtomicLong());
+    }
+
+    /**
+     * Count the calls to a function on a shared counter
+     * @param ef the function
+     * @param calls the counter
+     */
+    public AKCountingEvaluationFunction(EvaluationFunction ef, AtomicLong calls) {
+        this.ef = ef;
+        this.calls = calls;
+    }
+
+    /**
+     * Count the calls made by the functions a factory hands out
+     * @param factory the factory
+     * @param calls the counter the functions share
+     * @return a factory of counting functions
+     */
+    public static AKPopulationEvaluator.Factory counting(final AKPopulationEvaluator.Factory factory,
+            final AtomicLong calls) {
+        return new AKPopulationEvaluator.Factory() {
+            public EvaluationFunction create() {
+                return new AKCountingEvaluationFunction(factory.create(), calls);
+            }
+        };
+    }
+
+    /**
+     * @see opt.EvaluationFunction#value(shared.Instance)
+     */
+    public double value(Instance d) {
+        calls.incrementAndGet();
+        return ef.value(d);
+    }
+
+    /**
+     * Supports what the wrapped function supports, nothing if it is not an AKDeltaEvaluationFunction
+     * @see opt.test.AKDeltaEvaluationFunction#supports(opt.test.AKMove)
+     */
+    public boolean supports(AKMove move) {
+        return ef instanceof AKDeltaEvaluationFunction && ((AKDeltaEvaluationFunction) ef).supports(move);
+    }
+
+    /**
+     * @see opt.test.AKDeltaEvaluationFunction#valueAfter(shared.Instance, double, opt.test.AKMove)
+     */
+    public double valueAfter(Instance d, double value, AKMove move) {
+        calls.incrementAndGet();
+        return ((AKDeltaEvaluationFunction) ef).valueAfter(d, value, move);
+    }
+
+    /**
+     * @see opt.test.AKDeltaEvaluationFunction#apply(shared.Instance, opt.test.AKMove)
+     */
+    public void apply(Instance d, AKMove move) {
+        ((AKDeltaEvaluationFunction) ef).apply(d, move);
+    }
+
+    /**
+     * Get the calls counted so far
+     * @return the count
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * Get the counter, to share with other wrappers
+     * @return the counter
+     */
+    public AtomicLong getCounter() {
+        return calls;
+    }
+
+    /**
+     * Get the function being counted
+     * @return the function
+     */
+    public EvaluationFunction getFunction() {
+        return ef;
+    }
+}
@@ -0,0 +1,160 @@
+package opt.test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An undirected graph in compressed sparse row form: the neighbors of vertex v
+ * are neighbors[offsets[v]] up to neighbors[offsets[v + 1]]. Every edge is
+ * stored once in each direction, and the whole adjacency lives in two int
+ * arrays however many vertices there are.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKCsrGraph {
+    /** The number of vertices */
+    private final int n;
+    /** Where each vertex's neighbors start, n + 1 entries */
+    private final int[] offsets;
+    /** The neighbors of every vertex, back to back */
+    private final int[] neighbors;
+
+    private AKCsrGraph(int n, int[] offsets, int[] neighbors) {
+        this.n = n;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+    }
+
+    /**
+     * Build a graph from an edge list. Self loops are dropped.
+     * @param n the number of vertices
+     * @param from one end of each edge
+     * @param to the other end of each edge
+     * @param edges the number of edges
+     * @return the graph
+     */
+    public static AKCsrGraph fromEdges(int n, int[] from, int[] to, int edges) {
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < edges; e++) {
+            if (from[e] < 0 || from[e] >= n || to[e] < 0 || to[e] >= n) {
+                throw new IllegalArgumentException("edge " + from[e] + " " + to[e] + " outside [0, " + n + ")");
+            }
+            if (from[e] != to[e]) {
+                offsets[from[e] + 1]++;
+                offsets[to[e] + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] fill = Arrays.copyOf(offsets, n);
+        int[] neighbors = new int[offsets[n]];
+        for (int e = 0; e < edges; e++) {
+            if (from[e] != to[e]) {
+                neighbors[fill[from[e]]++] = to[e];
+                neighbors[fill[to[e]]++] = from[e];
+            }
+        }
+        return new AKCsrGraph(n, offsets, neighbors);
+    }
+
+    /**
+     * Load an edge list file with one "u v" pair per line, separated by spaces,
+     * tabs or a comma. Lines starting with # or % are comments. The graph has
+     * one vertex per id up to the largest id seen.
+     * @param path the file
+     * @return the graph
+     * @throws IOException if the file can't be read or is malformed
+     */
+    public static AKCsrGraph load(String path) throws IOException {
+        int[] from = new int[1 << 16], to = new int[1 << 16];
+        int edges = 0, n = 0, lineNumber = 0;
+        BufferedReader br = new BufferedReader(new FileReader(path), 1 << 16);
+        try {
+            String line;
+            while ((line = br.readLine()) != null) {
+                lineNumber++;
+                int i = skip(line, 0);
+                if (i == line.length() || line.charAt(i) == '#' || line.charAt(i) == '%') {
+                    continue;
+                }
+                if (edges == from.length) {
+                    from = Arrays.copyOf(from, edges * 2);
+                    to = Arrays.copyOf(to, edges * 2);
+                }
+                int end = number(line, i, path, lineNumber);
+                from[edges] = Integer.parseInt(line.substring(i, end));
+                i = skip(line, end);
+                end = number(line, i, path, lineNumber);
+                to[edges] = Integer.parseInt(line.substring(i, end));
+                n = Math.max(n, Math.max(from[edges], to[edges]) + 1);
+                edges++;
+            }
+        } finally {
+            br.close();
+        }
+        return fromEdges(n, from, to, edges);
+    }
+
+    private static int skip(String line, int i) {
+        while (i < line.length() && (line.charAt(i) == ' ' || line.charAt(i) == '\t' || line.charAt(i) == ',')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int number(String line, int i, String path, int lineNumber) throws IOException {
+        int end = i;
+        while (end < line.length() && Character.isDigit(line.charAt(end))) {
+            end++;
+        }
+        if (end == i) {
+            throw new IOException(path + ":" + lineNumber + ": expected a vertex id");
+        }
+        return end;
+    }
+
+    /**
+     * Get the number of vertices
+     * @return the vertex count
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Get the number of adjacency entries, twice the number of edges
+     * @return the entry count
+     */
+    public int entries() {
+        return neighbors.length;
+    }
+
+    /**
+     * Get the degree of a vertex
+     * @param v the vertex
+     * @return its number of neighbors
+     */
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /**
+     * Get the offsets array, shared not copied
+     * @return where each vertex's neighbors start, n + 1 entries
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Get the neighbors array, shared not copied
+     * @return the neighbors of every vertex, back to back
+     */
+    public int[] getNeighbors() {
+        return neighbors;
+    }
+}
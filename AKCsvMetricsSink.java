@@ -0,0 +1,79 @@
+package opt.test;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes metrics samples as CSV, a header and then one row per sample, with
+ * the run name in the first column so the rows of several runs can share a
+ * file. Counts that were not kept are left empty.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKCsvMetricsSink implements AKMetricsSink {
+    /** The columns */
+    private static final String HEADER =
+            "run,iteration,best,current,evaluations,elapsed_ns,evaluations_per_second,accepted,rejected";
+
+    /** The output */
+    private final Writer out;
+
+    /**
+     * Write to a file, replacing it
+     * @param path the file
+     * @throws IOException if it can't be opened
+     */
+    public AKCsvMetricsSink(String path) throws IOException {
+        this(new FileWriter(path));
+    }
+
+    /**
+     * Write to a writer
+     * @param out the writer, closed with the sink
+     * @throws IOException if the header can't be written
+     */
+    public AKCsvMetricsSink(Writer out) throws IOException {
+        this.out = new BufferedWriter(out);
+        this.out.write(HEADER);
+        this.out.write('\n');
+    }
+
+    /**
+     * @see opt.test.AKMetricsSink#record(opt.test.AKRunMetrics.Sample)
+     */
+    public void record(AKRunMetrics.Sample s) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(quote(s.getRun())).append(',').append(s.getIteration()).append(',').append(s.getBest())
+                .append(',').append(s.getCurrent()).append(',').append(count(s.getEvaluations())).append(',')
+                .append(s.getElapsedNanos()).append(',');
+        if (s.getEvaluations() >= 0) {
+            sb.append(s.getEvaluationsPerSecond());
+        }
+        sb.append(',').append(count(s.getAccepted())).append(',').append(count(s.getRejected())).append('\n');
+        out.write(sb.toString());
+    }
+
+    /**
+     * @see opt.test.AKMetricsSink#close()
+     */
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static String count(long count) {
+        return count < 0 ? "" : Long.toString(count);
+    }
+
+    /**
+     * Quote a field if it holds a separator or a quote
+     */
+    private static String quote(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,160 @@
+package opt.test;
+
+import java.util.Random;
+
+import shared.Instance;
+
+/**
+ * A classification data set stored as one contiguous row major feature matrix
+ * and one class index per row, instead of an Instance and a label Instance per
+ * row. Views over a range of rows share the backing arrays, so train and test
+ * splits cost nothing.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKDataSet {
+    /** The features of every row of the backing matrix */
+    private final double[] features;
+    /** The class of every row of the backing matrix */
+    private final int[] labels;
+    /** The number of features per row */
+    private final int featureCount;
+    /** The number of classes */
+    private final int classCount;
+    /** The first backing row of this view */
+    private final int offset;
+    /** The number of rows in this view */
+    private final int size;
+
+    /**
+     * Make a new data set over the given arrays, which are not copied
+     * @param features the row major features, featureCount per row
+     * @param labels the class of each row
+     * @param featureCount the number of features per row
+     * @param classCount the number of classes
+     */
+    public AKDataSet(double[] features, int[] labels, int featureCount, int classCount) {
+        this(features, labels, featureCount, classCount, 0, labels.length);
+        if (features.length != labels.length * featureCount) {
+            throw new IllegalArgumentException("expected " + labels.length * featureCount
+                    + " features, got " + features.length);
+        }
+    }
+
+    private AKDataSet(double[] features, int[] labels, int featureCount, int classCount, int offset, int size) {
+        this.features = features;
+        this.labels = labels;
+        this.featureCount = featureCount;
+        this.classCount = classCount;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * Get a view of rows [from, to) that shares this data set's arrays
+     * @param from the first row
+     * @param to one past the last row
+     * @return the view
+     */
+    public AKDataSet view(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("view [" + from + ", " + to + ") of " + size + " rows");
+        }
+        return new AKDataSet(features, labels, featureCount, classCount, offset + from, to - from);
+    }
+
+    /**
+     * Make a shuffled copy of this data set
+     * @param random the random number generator
+     * @return the copy, with its rows in random order
+     */
+    public AKDataSet shuffle(Random random) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = order[index];
+            order[index] = order[i];
+            order[i] = temp;
+        }
+        double[] shuffledFeatures = new double[size * featureCount];
+        int[] shuffledLabels = new int[size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(features, rowStart(order[i]), shuffledFeatures, i * featureCount, featureCount);
+            shuffledLabels[i] = labels[offset + order[i]];
+        }
+        return new AKDataSet(shuffledFeatures, shuffledLabels, featureCount, classCount);
+    }
+
+    /**
+     * Build Instances with one hot labels for code that needs a shared.DataSet
+     * @return a new instance per row
+     */
+    public Instance[] toInstances() {
+        Instance[] instances = new Instance[size];
+        for (int i = 0; i < size; i++) {
+            double[] x = new double[featureCount];
+            System.arraycopy(features, rowStart(i), x, 0, featureCount);
+            double[] classes = new double[classCount];
+            classes[getLabel(i)] = 1.0;
+            instances[i] = new Instance(x);
+            instances[i].setLabel(new Instance(classes));
+        }
+        return instances;
+    }
+
+    /**
+     * Get the number of rows
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * Get the backing feature matrix, shared by every view
+     * @return the features
+     */
+    public double[] getFeatures() {
+        return features;
+    }
+
+    /**
+     * Get the index in the backing feature matrix of a row's first feature
+     * @param row the row in this view
+     * @return the index
+     */
+    public int rowStart(int row) {
+        return (offset + row) * featureCount;
+    }
+
+    /**
+     * Get one feature of a row
+     * @param row the row in this view
+     * @param j the feature
+     * @return the value
+     */
+    public double getFeature(int row, int j) {
+        return features[(offset + row) * featureCount + j];
+    }
+
+    /**
+     * Get the class of a row
+     * @param row the row in this view
+     * @return the class index
+     */
+    public int getLabel(int row) {
+        return labels[offset + row];
+    }
+}
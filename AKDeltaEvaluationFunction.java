@@ -0,0 +1,40 @@
+package opt.test;
+
+import opt.EvaluationFunction;
+import shared.Instance;
+
+/**
+ * An evaluation function that can score a move from a candidate without
+ * scoring the whole changed candidate, typically by looking only at the
+ * parts of the candidate the move touches. Functions that keep bookkeeping
+ * about a candidate, such as a running conflict count, update it when a move
+ * is made through apply().
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public interface AKDeltaEvaluationFunction extends EvaluationFunction {
+    /**
+     * Whether valueAfter can score this kind of move
+     * @param move the move
+     * @return true if it can
+     */
+    boolean supports(AKMove move);
+
+    /**
+     * Score a candidate as it would be after a move, without changing it
+     * @param d the candidate
+     * @param value the candidate's current value
+     * @param move a supported move
+     * @return the value after the move
+     */
+    double valueAfter(Instance d, double value, AKMove move);
+
+    /**
+     * Make a supported move on a candidate, keeping any bookkeeping the
+     * function holds about that candidate current
+     * @param d the candidate
+     * @param move a supported move
+     */
+    void apply(Instance d, AKMove move);
+}
@@ -0,0 +1,194 @@
+package opt.test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import dist.Distribution;
+import opt.EvaluationFunction;
+import opt.HillClimbingProblem;
+import opt.OptimizationAlgorithm;
+import shared.Instance;
+
+/**
+ * Randomized hill climbing or simulated annealing driven by moves. Each step
+ * proposes a move from the current point; when the evaluation function is an
+ * AKDeltaEvaluationFunction that supports the move it is scored from the
+ * current value alone, otherwise a copy is moved and scored in full. Accepted
+ * moves are made on the current point in place, so the instance returned by
+ * getOptimal() keeps changing as training goes on.
+ *
+ * Without a move generator the search falls back to the problem's neighbor
+ * function and behaves like RandomizedHillClimbing or SimulatedAnnealing.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKDeltaSearch extends OptimizationAlgorithm implements AKCheckpointable {
+    /** How often the current value is recomputed in full to stop drift */
+    private static final int RESYNC = 1 << 14;
+
+    /** The evaluation function */
+    private final EvaluationFunction ef;
+    /** The move generator, or null to use the problem's neighbors */
+    private final AKMoveGenerator moves;
+    /** The temperature, or 0 for hill climbing */
+    private double t;
+    /** The cooling factor */
+    private final double cooling;
+    /** The current point */
+    private Instance cur;
+    /** The value of the current point */
+    private double curVal;
+    /** The steps since the last full recompute */
+    private int steps;
+    /** The moves accepted so far */
+    private long accepted;
+
+    /**
+     * Make a new move based hill climber
+     * @param hcp the problem
+     * @param ef the problem's evaluation function
+     * @param moves the move generator
+     */
+    public AKDeltaSearch(HillClimbingProblem hcp, EvaluationFunction ef, AKMoveGenerator moves) {
+        this(0, 0, hcp, ef, moves);
+    }
+
+    /**
+     * Make a new move based annealer
+     * @param t the starting temperature
+     * @param cooling the cooling factor
+     * @param hcp the problem
+     * @param ef the problem's evaluation function
+     * @param moves the move generator
+     */
+    public AKDeltaSearch(double t, double cooling, HillClimbingProblem hcp, EvaluationFunction ef,
+            AKMoveGenerator moves) {
+        super(hcp);
+        this.t = t;
+        this.cooling = cooling;
+        this.ef = ef;
+        this.moves = moves;
+        this.cur = hcp.random();
+        this.curVal = ef.value(cur);
+    }
+
+    /**
+     * Take one step
+     * @see shared.Trainer#train()
+     */
+    public double train() {
+        if (moves == null) {
+            HillClimbingProblem hcp = (HillClimbingProblem) getOptimizationProblem();
+            Instance neigh = hcp.neighbor(cur);
+            double neighVal = ef.value(neigh);
+            if (accept(neighVal)) {
+                cur = neigh;
+                curVal = neighVal;
+                accepted++;
+            }
+        } else {
+            AKMove move = moves.propose(cur);
+            if (ef instanceof AKDeltaEvaluationFunction && ((AKDeltaEvaluationFunction) ef).supports(move)) {
+                AKDeltaEvaluationFunction def = (AKDeltaEvaluationFunction) ef;
+                double neighVal = def.valueAfter(cur, curVal, move);
+                if (accept(neighVal)) {
+                    def.apply(cur, move);
+                    curVal = neighVal;
+                    accepted++;
+                }
+            } else {
+                Instance neigh = (Instance) cur.copy();
+                move.apply(neigh);
+                double neighVal = ef.value(neigh);
+                if (accept(neighVal)) {
+                    cur = neigh;
+                    curVal = neighVal;
+                    accepted++;
+                }
+            }
+            if (++steps == RESYNC) {
+                curVal = ef.value(cur);
+                steps = 0;
+            }
+        }
+        t *= cooling;
+        return curVal;
+    }
+
+    /**
+     * The hill climbing test, or the Metropolis test when annealing
+     */
+    private boolean accept(double neighVal) {
+        if (neighVal > curVal) {
+            return true;
+        }
+        return t > 0 && Distribution.random.nextDouble() < Math.exp((neighVal - curVal) / t);
+    }
+
+    /**
+     * @see opt.OptimizationAlgorithm#getOptimal()
+     */
+    public Instance getOptimal() {
+        return cur;
+    }
+
+    /**
+     * Move the search to another point
+     * @param cur the new current point, which the search will change in place
+     * @param curVal its value
+     */
+    public void setCurrent(Instance cur, double curVal) {
+        this.cur = cur;
+        this.curVal = curVal;
+        this.steps = 0;
+    }
+
+    /**
+     * Write the temperature, the current point and its value
+     * @see opt.test.AKCheckpointable#writeState(java.io.DataOutputStream)
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+        out.writeDouble(t);
+        out.writeDouble(curVal);
+        out.writeInt(steps);
+        out.writeLong(accepted);
+        AKCheckpoint.writeInstance(out, cur);
+    }
+
+    /**
+     * @see opt.test.AKCheckpointable#readState(java.io.DataInputStream)
+     */
+    public void readState(DataInputStream in) throws IOException {
+        t = in.readDouble();
+        curVal = in.readDouble();
+        steps = in.readInt();
+        accepted = in.readLong();
+        cur = AKCheckpoint.readInstance(in);
+    }
+
+    /**
+     * Get the value of the current point
+     * @return the value
+     */
+    public double getValue() {
+        return curVal;
+    }
+
+    /**
+     * Get the number of moves accepted so far
+     * @return the accepted moves, out of one proposed per call to train()
+     */
+    public long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * Get the current temperature
+     * @return the temperature, 0 when hill climbing
+     */
+    public double getTemperature() {
+        return t;
+    }
+}
@@ -0,0 +1,347 @@
+package opt.test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import dist.Distribution;
+import opt.EvaluationFunction;
+import opt.OptimizationAlgorithm;
+
+/**
+ * One cell of an experiment: an algorithm with one setting of its parameters
+ * run once on a problem, scored at each milestone of an iteration schedule.
+ * The run goes once up to the largest milestone, as in AKMilestoneTrainer,
+ * and uses a single thread, since the jobs themselves are what run in
+ * parallel.
+ *
+ * The algorithms are rhc and sa as AKDeltaSearch, with parameters t0 and
+ * cooling for sa; ga as AKParallelGeneticAlgorithm with popSize, toMate and
+ * toMutate, the last two fractions of popSize as in the tests; and mimic as
+ * AKParallelMIMIC with samples and toKeep.
+ *
+ * With an AKResultCache the run is checkpointed every so often: the
+ * iterations run, the scores so far and the algorithm's state. A job started
+ * again with the same key goes on from its last checkpoint. Distribution.random
+ * is not part of a checkpoint, so a resumed run follows a different random
+ * path from the one it would have taken.
+ *
+ * A job seeds Distribution.random before it runs, which only makes it
+ * repeatable when no other job draws from it at the same time. unseeded()
+ * gives the job to run alongside others: it leaves Distribution.random
+ * alone, and its key names the repeat instead of the seed, so its results
+ * are never taken for those of a seeded run.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKExperimentJob {
+    /** The hill climbing steps between looks at the checkpoint clock */
+    private static final int CLOCK_STEPS = 1024;
+    /** The problem */
+    private final AKExperimentProblem problem;
+    /** The algorithm's name */
+    private final String algorithm;
+    /** The parameter values, in the order the spec lists them */
+    private final Map<String, Double> params;
+    /** The repeat this is, from 0 */
+    private final int repeat;
+    /** The seed of this repeat */
+    private final long seed;
+    /** Whether Distribution.random is seeded with the seed before the run */
+    private final boolean seeded;
+    /** The iterations to score at, ascending */
+    private final int[] milestones;
+
+    /**
+     * Make a new job
+     * @param problem the problem
+     * @param algorithm rhc, sa, ga or mimic
+     * @param params the parameter values
+     * @param repeat the repeat this is, from 0
+     * @param seed the seed of this repeat
+     * @param milestones the iterations to score at
+     */
+    public AKExperimentJob(AKExperimentProblem problem, String algorithm, Map<String, Double> params, int repeat,
+            long seed, int[] milestones) {
+        this(problem, algorithm, params, repeat, seed, true, milestones);
+    }
+
+    private AKExperimentJob(AKExperimentProblem problem, String algorithm, Map<String, Double> params, int repeat,
+            long seed, boolean seeded, int[] milestones) {
+        this.problem = problem;
+        this.algorithm = algorithm;
+        this.params = Collections.unmodifiableMap(new LinkedHashMap<String, Double>(params));
+        this.repeat = repeat;
+        this.seed = seed;
+        this.seeded = seeded;
+        this.milestones = milestones.clone();
+        Arrays.sort(this.milestones);
+    }
+
+    /**
+     * Get the same job run without seeding Distribution.random, for running
+     * alongside other jobs
+     * @return the unseeded job
+     */
+    public AKExperimentJob unseeded() {
+        return new AKExperimentJob(problem, algorithm, params, repeat, seed, false, milestones);
+    }
+
+    /**
+     * Run the job
+     * @return a result per milestone
+     */
+    public List<Result> run() {
+        try {
+            return run(null, 0);
+        } catch (IOException e) {
+            // nothing is read or written without a cache
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Run the job, going on from its checkpoint in a cache if it has one
+     * @param cache keeps the checkpoint and the results, or null for neither
+     * @param checkpointSeconds the seconds between checkpoints
+     * @return a result per milestone
+     * @throws IOException if the checkpoint can't be read or written
+     */
+    public List<Result> run(AKResultCache cache, double checkpointSeconds) throws IOException {
+        AKExperimentProblem.Setup setup = problem.setup();
+        if (seeded) {
+            Distribution.random.setSeed(seed);
+        }
+        OptimizationAlgorithm oa = build(setup);
+        EvaluationFunction ef = algorithm.equals("mimic") ? setup.getPopEf() : setup.getEf();
+        Progress progress = new Progress((AKCheckpointable) oa);
+        File checkpoint = cache == null ? null : cache.checkpoint(this);
+        if (checkpoint != null && checkpoint.exists()) {
+            AKCheckpoint.restore(checkpoint, progress);
+        }
+        // hill climbing steps are too quick to look at the clock after every one
+        int clockSteps = algorithm.equals("rhc") || algorithm.equals("sa") ? CLOCK_STEPS : 1;
+        long interval = (long) (checkpointSeconds * 1e9);
+        long start = System.nanoTime(), saved = start;
+        double before = progress.seconds;
+        // as AKMilestoneTrainer does, one run up to the last milestone, picking up after the scores already taken
+        for (int m = progress.results.size(); m < milestones.length; m++) {
+            while (progress.iteration < milestones[m]) {
+                oa.train();
+                progress.iteration++;
+                if (checkpoint != null && progress.iteration % clockSteps == 0
+                        && System.nanoTime() - saved >= interval) {
+                    saved = System.nanoTime();
+                    progress.seconds = before + (saved - start) / 1e9;
+                    AKCheckpoint.save(checkpoint, progress);
+                }
+            }
+            progress.results.add(new Result(milestones[m], ef.value(oa.getOptimal()),
+                    before + (System.nanoTime() - start) / 1e9));
+        }
+        if (cache != null) {
+            cache.put(this, progress.results);
+        }
+        return progress.results;
+    }
+
+    /**
+     * Make the job a candidate for an AKSuccessiveHalving search, trained in
+     * steps on its own copy of the problem and scored by its optimum
+     * @return the candidate
+     */
+    public AKSuccessiveHalving.Candidate candidate() {
+        AKExperimentProblem.Setup setup = problem.setup();
+        final OptimizationAlgorithm oa = build(setup);
+        final EvaluationFunction ef = algorithm.equals("mimic") ? setup.getPopEf() : setup.getEf();
+        return new AKSuccessiveHalving.Candidate() {
+            public void train(int iterations) {
+                for (int i = 0; i < iterations; i++) {
+                    oa.train();
+                }
+            }
+
+            public double score() {
+                return ef.value(oa.getOptimal());
+            }
+        };
+    }
+
+    /**
+     * Build the algorithm on a fresh copy of the problem
+     */
+    private OptimizationAlgorithm build(AKExperimentProblem.Setup setup) {
+        if (algorithm.equals("rhc")) {
+            return new AKDeltaSearch(setup.getHcp(), setup.getEf(), setup.getMoves());
+        } else if (algorithm.equals("sa")) {
+            return new AKDeltaSearch(param("t0"), param("cooling"), setup.getHcp(), setup.getEf(),
+                    setup.getMoves());
+        } else if (algorithm.equals("ga")) {
+            int popSize = (int) param("popSize");
+            return new AKParallelGeneticAlgorithm(popSize, (int) (popSize * param("toMate")),
+                    (int) (popSize * param("toMutate")), setup.getGap(),
+                    new AKPopulationEvaluator(setup.getEf(), 1));
+        } else if (algorithm.equals("mimic")) {
+            return new AKParallelMIMIC((int) param("samples"), (int) param("toKeep"), setup.getPop(),
+                    new AKPopulationEvaluator(setup.getPopEf(), 1));
+        }
+        throw new IllegalArgumentException("unknown algorithm " + algorithm + ", expected rhc, sa, ga or mimic");
+    }
+
+    private double param(String name) {
+        Double value = params.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException(algorithm + " needs a value for " + name);
+        }
+        return value;
+    }
+
+    /**
+     * A rough measure of the work in the job, so the longest jobs can be started first
+     * @return the iterations times the evaluations per iteration
+     */
+    public double cost() {
+        double perIteration = 1;
+        if (algorithm.equals("ga")) {
+            perIteration = param("popSize");
+        } else if (algorithm.equals("mimic")) {
+            perIteration = param("samples");
+        }
+        return perIteration * milestones[milestones.length - 1];
+    }
+
+    /**
+     * Describe the parameters
+     * @return name=value pairs separated by semicolons
+     */
+    public String describeParams() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Double> e : params.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(e.getKey()).append('=').append(e.getValue());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Identify the job by everything that decides its results
+     * @return the problem, algorithm, parameters, seed, or repeat when unseeded, and schedule
+     */
+    public String getKey() {
+        return problem.describe() + "|" + algorithm + "|" + describeParams() + "|"
+                + (seeded ? "seed=" + seed : "unseeded,repeat=" + repeat) + "|" + Arrays.toString(milestones);
+    }
+
+    public AKExperimentProblem getProblem() {
+        return problem;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public Map<String, Double> getParams() {
+        return params;
+    }
+
+    public int getRepeat() {
+        return repeat;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get whether the run seeds Distribution.random
+     * @return false for a job from unseeded()
+     */
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    public int[] getMilestones() {
+        return milestones.clone();
+    }
+
+    /**
+     * How far a run has got, the state a checkpoint holds
+     */
+    private static class Progress implements AKCheckpointable {
+        /** The algorithm */
+        private final AKCheckpointable oa;
+        /** The scores taken so far */
+        private final List<Result> results = new ArrayList<Result>();
+        /** The iterations run */
+        private int iteration;
+        /** The seconds spent before the last checkpoint */
+        private double seconds;
+
+        private Progress(AKCheckpointable oa) {
+            this.oa = oa;
+        }
+
+        public void writeState(DataOutputStream out) throws IOException {
+            out.writeInt(iteration);
+            out.writeDouble(seconds);
+            out.writeInt(results.size());
+            for (Result r : results) {
+                out.writeInt(r.getIteration());
+                out.writeDouble(r.getFitness());
+                out.writeDouble(r.getSeconds());
+            }
+            oa.writeState(out);
+        }
+
+        public void readState(DataInputStream in) throws IOException {
+            iteration = in.readInt();
+            seconds = in.readDouble();
+            results.clear();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                results.add(new Result(in.readInt(), in.readDouble(), in.readDouble()));
+            }
+            oa.readState(in);
+        }
+    }
+
+    /**
+     * The score of a job at one milestone
+     */
+    public static class Result {
+        /** The milestone */
+        private final int iteration;
+        /** The score of the optimum */
+        private final double fitness;
+        /** The seconds since the job started */
+        private final double seconds;
+
+        public Result(int iteration, double fitness, double seconds) {
+            this.iteration = iteration;
+            this.fitness = fitness;
+            this.seconds = seconds;
+        }
+
+        public int getIteration() {
+            return iteration;
+        }
+
+        public double getFitness() {
+            return fitness;
+        }
+
+        public double getSeconds() {
+            return seconds;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package opt.test;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+import dist.DiscretePermutationDistribution;
+import dist.DiscreteUniformDistribution;
+import dist.Distribution;
+import opt.EvaluationFunction;
+import opt.GenericHillClimbingProblem;
+import opt.HillClimbingProblem;
+import opt.SwapNeighbor;
+import opt.example.TravelingSalesmanCrossOver;
+import opt.example.TravelingSalesmanEvaluationFunction;
+import opt.example.TravelingSalesmanSortEvaluationFunction;
+import opt.ga.GenericGeneticAlgorithmProblem;
+import opt.ga.GeneticAlgorithmProblem;
+import opt.ga.MaxKColorFitnessFunction;
+import opt.ga.SingleCrossOver;
+import opt.ga.SwapMutation;
+import opt.ga.Vertex;
+import opt.prob.GenericProbabilisticOptimizationProblem;
+import opt.prob.ProbabilisticOptimizationProblem;
+
+/**
+ * One of the discrete test problems as an experiment sees it: a fixed
+ * instance drawn from a seed, set up afresh for each job so jobs running at
+ * once never share an evaluation function. The encodings follow the test
+ * classes: traveling salesman as a permutation for the hill climbers and GA
+ * and as a sort key for MIMIC, max k coloring as in AKMaxKColoringTest, and
+ * continuous peaks as packed bits.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public abstract class AKExperimentProblem {
+    /** The name in specs and results */
+    private final String name;
+
+    /**
+     * Make a new problem
+     * @param name the name in specs and results
+     */
+    protected AKExperimentProblem(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Make a problem from its settings in a spec, each read from name.key
+     * @param name tsp, maxk or peaks
+     * @param spec the spec
+     * @return the problem
+     */
+    public static AKExperimentProblem forName(String name, Properties spec) {
+        long seed = Long.parseLong(setting(spec, name, "seed", "1"));
+        if (name.equals("tsp")) {
+            return new TravelingSalesman(Integer.parseInt(setting(spec, name, "n", "50")), seed);
+        } else if (name.equals("maxk")) {
+            return new MaxKColoring(Integer.parseInt(setting(spec, name, "n", "50")),
+                    Integer.parseInt(setting(spec, name, "l", "4")), Integer.parseInt(setting(spec, name, "k", "8")),
+                    seed);
+        } else if (name.equals("peaks")) {
+            int n = Integer.parseInt(setting(spec, name, "n", "500"));
+            return new ContinuousPeaks(n, Integer.parseInt(setting(spec, name, "t", Integer.toString(n / 2))));
+        }
+        throw new IllegalArgumentException("unknown problem " + name + ", expected tsp, maxk or peaks");
+    }
+
+    private static String setting(Properties spec, String name, String key, String fallback) {
+        return spec.getProperty(name + "." + key, fallback).trim();
+    }
+
+    /**
+     * Build a fresh copy of the problem
+     * @return the parts the algorithms are built on
+     */
+    public abstract Setup setup();
+
+    /**
+     * Describe the instance, for job keys
+     * @return the name and size of the instance
+     */
+    public abstract String describe();
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The parts of a problem the algorithms are built on
+     */
+    public static class Setup {
+        /** Scores the hill climbers and GA */
+        private final EvaluationFunction ef;
+        /** The hill climbing problem */
+        private final HillClimbingProblem hcp;
+        /** The genetic algorithm problem */
+        private final GeneticAlgorithmProblem gap;
+        /** The moves for the hill climbers, or null to use the problem's neighbors */
+        private final AKMoveGenerator moves;
+        /** The probabilistic problem */
+        private final ProbabilisticOptimizationProblem pop;
+        /** Scores MIMIC */
+        private final EvaluationFunction popEf;
+
+        public Setup(EvaluationFunction ef, HillClimbingProblem hcp, GeneticAlgorithmProblem gap,
+                AKMoveGenerator moves, ProbabilisticOptimizationProblem pop, EvaluationFunction popEf) {
+            this.ef = ef;
+            this.hcp = hcp;
+            this.gap = gap;
+            this.moves = moves;
+            this.pop = pop;
+            this.popEf = popEf;
+        }
+
+        public EvaluationFunction getEf() {
+            return ef;
+        }
+
+        public HillClimbingProblem getHcp() {
+            return hcp;
+        }
+
+        public GeneticAlgorithmProblem getGap() {
+            return gap;
+        }
+
+        public AKMoveGenerator getMoves() {
+            return moves;
+        }
+
+        public ProbabilisticOptimizationProblem getPop() {
+            return pop;
+        }
+
+        public EvaluationFunction getPopEf() {
+            return popEf;
+        }
+    }
+
+    /**
+     * Traveling salesman over random points in the unit square
+     */
+    private static class TravelingSalesman extends AKExperimentProblem {
+        /** The points */
+        private final double[][] points;
+        /** The seed the points were drawn from */
+        private final long seed;
+
+        private TravelingSalesman(int n, long seed) {
+            super("tsp");
+            this.seed = seed;
+            Random random = new Random(seed);
+            points = new double[n][2];
+            for (int i = 0; i < n; i++) {
+                points[i][0] = random.nextDouble();
+                points[i][1] = random.nextDouble();
+            }
+        }
+
+        public Setup setup() {
+            int n = points.length;
+            TravelingSalesmanEvaluationFunction ef = new AKTravelingSalesmanDeltaFunction(points);
+            Distribution odd = new DiscretePermutationDistribution(n);
+            HillClimbingProblem hcp = new GenericHillClimbingProblem(ef, odd, new SwapNeighbor());
+            GeneticAlgorithmProblem gap = new GenericGeneticAlgorithmProblem(ef, odd, new SwapMutation(),
+                    new TravelingSalesmanCrossOver(ef));
+            TravelingSalesmanEvaluationFunction sortEf = new TravelingSalesmanSortEvaluationFunction(points);
+            int[] ranges = new int[n];
+            Arrays.fill(ranges, n);
+            ProbabilisticOptimizationProblem pop = new GenericProbabilisticOptimizationProblem(sortEf,
+                    new DiscreteUniformDistribution(ranges), new AKParallelDependencyTree(.1, ranges, 1));
+            return new Setup(ef, hcp, gap, new AKSwapMoveGenerator(), pop, sortEf);
+        }
+
+        public String describe() {
+            return "tsp;n=" + points.length + ";seed=" + seed;
+        }
+    }
+
+    /**
+     * Max k coloring of a random graph with l neighbors per vertex
+     */
+    private static class MaxKColoring extends AKExperimentProblem {
+        /** The vertex count, neighbors per vertex and colors */
+        private final int n, l, k;
+        /** The seed the graph was drawn from */
+        private final long seed;
+        /** The neighbors of each vertex */
+        private final int[][] neighbors;
+
+        private MaxKColoring(int n, int l, int k, long seed) {
+            super("maxk");
+            this.n = n;
+            this.l = l;
+            this.k = k;
+            this.seed = seed;
+            Random random = new Random(seed);
+            neighbors = new int[n][l];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < l; j++) {
+                    neighbors[i][j] = random.nextInt(n * l);
+                }
+            }
+        }
+
+        public Setup setup() {
+            // the vertices record conflicts as they are scored, so every job builds its own
+            Vertex[] vertices = new Vertex[n];
+            for (int i = 0; i < n; i++) {
+                vertices[i] = new Vertex();
+                vertices[i].setAdjMatrixSize(l);
+                for (int j = 0; j < l; j++) {
+                    vertices[i].getAadjacencyColorMatrix().add(neighbors[i][j]);
+                }
+            }
+            MaxKColorFitnessFunction ef = new MaxKColorFitnessFunction(vertices);
+            Distribution odd = new DiscretePermutationDistribution(k);
+            HillClimbingProblem hcp = new GenericHillClimbingProblem(ef, odd, new SwapNeighbor());
+            GeneticAlgorithmProblem gap = new GenericGeneticAlgorithmProblem(ef, odd, new SwapMutation(),
+                    new SingleCrossOver());
+            ProbabilisticOptimizationProblem pop = new GenericProbabilisticOptimizationProblem(ef, odd,
+                    new AKParallelDependencyTree(.1, 1));
+            return new Setup(ef, hcp, gap, null, pop, ef);
+        }
+
+        public String describe() {
+            return "maxk;n=" + n + ";l=" + l + ";k=" + k + ";seed=" + seed;
+        }
+    }
+
+    /**
+     * Continuous peaks on packed bits
+     */
+    private static class ContinuousPeaks extends AKExperimentProblem {
+        /** The bits and the run length that earns the bonus */
+        private final int n, t;
+
+        private ContinuousPeaks(int n, int t) {
+            super("peaks");
+            this.n = n;
+            this.t = t;
+        }
+
+        public Setup setup() {
+            int[] ranges = new int[n];
+            Arrays.fill(ranges, 2);
+            AKContinuousPeaksBitFunction ef = new AKContinuousPeaksBitFunction(t);
+            AKBitStringProblem bsp = new AKBitStringProblem(ef, n);
+            ProbabilisticOptimizationProblem pop = new GenericProbabilisticOptimizationProblem(ef,
+                    new DiscreteUniformDistribution(ranges), new AKParallelDependencyTree(.1, ranges, 1));
+            return new Setup(ef, bsp, bsp, new AKChangeOneMoveGenerator(ranges), pop, ef);
+        }
+
+        public String describe() {
+            return "peaks;n=" + n + ";t=" + t;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package opt.test;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a whole experiment from a spec instead of commented out grid search
+ * loops. The spec is a properties file naming the problems, the algorithms,
+ * a list of values for each algorithm parameter, each algorithm's iteration
+ * schedule, the repeats and the seed:
+ *
+ * <pre>
+ * problems = tsp, peaks
+ * tsp.n = 50
+ * algorithms = rhc, sa, ga, mimic
+ * sa.t0 = 10, 500, 2500
+ * sa.cooling = 0.1, 0.5, 0.95
+ * sa.iterations = 1, 5, 10, 25, 500, 1000, 50000, 200000
+ * repeats = 3
+ * seed = 1
+ * results = results.csv
+ * cache = cache
+ * checkpoint.seconds = 60
+ * </pre>
+ *
+ * Every combination of problem, algorithm, parameter values and repeat is a
+ * separate AKExperimentJob. The jobs run on a work stealing pool with a thread
+ * per core (or the spec's threads), the most expensive started first so the
+ * run doesn't end waiting on one long job, and each job's results are added to
+ * an AKResultStore as it finishes. Repeat r of every cell uses seed + r, but
+ * only when threads = 1.
+ *
+ * With a cache directory, finished jobs are kept in an AKResultCache and not
+ * rerun when the spec is run again, their cached results going to the store
+ * like fresh ones, and running jobs are checkpointed every
+ * checkpoint.seconds so a run that dies picks them up where they were.
+ *
+ * With search = halving the grid of each algorithm with parameters is
+ * searched by AKSuccessiveHalving instead: every setting starts with
+ * halving.min iterations (default 100), the best 1 / halving.eta (default 3)
+ * go on with eta times the budget, up to the largest milestone, and the
+ * ranking of each search is printed. Nothing is cached or stored in this mode.
+ *
+ * The seed only applies when threads = 1. The algorithms draw from
+ * Distribution.random, one static generator that a job can't have a copy of,
+ * so with more than one thread the jobs draw from it as they reach it and no
+ * run is repeatable. The jobs of such a run are unseeded: the seed is
+ * ignored, they are cached apart from seeded results and they are stored with
+ * a seed of none. The halving search never seeds.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKExperimentRunner {
+    /** The parameters of each algorithm, and the values used when the spec gives none, as in the tests */
+    private static final String[][] PARAMETERS = {
+        { "rhc" },
+        { "sa", "t0", "2500", "cooling", "0.25" },
+        { "ga", "popSize", "250", "toMate", "0.05", "toMutate", "0.03" },
+        { "mimic", "samples", "150", "toKeep", "10" }
+    };
+
+    /**
+     * Run the experiment a spec describes
+     * @param args the spec file
+     * @throws IOException if the spec can't be read or the results can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: AKExperimentRunner <spec.properties>");
+            return;
+        }
+        Properties spec = new Properties();
+        Reader in = new FileReader(args[0]);
+        try {
+            spec.load(in);
+        } finally {
+            in.close();
+        }
+        int threads = Integer.parseInt(spec.getProperty("threads",
+                Integer.toString(Runtime.getRuntime().availableProcessors())).trim());
+        if (threads > 1 && spec.containsKey("seed")) {
+            System.out.println("the seed only applies with threads = 1; this run on " + threads
+                    + " threads is not repeatable");
+        }
+        if (spec.getProperty("search", "grid").trim().equals("halving")) {
+            halving(spec, threads);
+            return;
+        }
+        String cacheDir = spec.getProperty("cache");
+        AKResultCache cache = cacheDir == null ? null : new AKResultCache(new File(cacheDir.trim()));
+        double checkpointSeconds = Double.parseDouble(spec.getProperty("checkpoint.seconds", "60").trim());
+        AKResultStore store = new AKResultStore(spec.getProperty("results", "results.csv").trim());
+        try {
+            run(expand(spec), threads, store, cache, checkpointSeconds);
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Expand a spec into its jobs
+     * @param spec the spec
+     * @return a job per problem, algorithm, setting of the parameters and repeat
+     */
+    public static List<AKExperimentJob> expand(Properties spec) {
+        int repeats = Integer.parseInt(spec.getProperty("repeats", "1").trim());
+        long seed = Long.parseLong(spec.getProperty("seed", "1").trim());
+        List<AKExperimentJob> jobs = new ArrayList<AKExperimentJob>();
+        for (String problemName : list(spec, "problems")) {
+            AKExperimentProblem problem = AKExperimentProblem.forName(problemName, spec);
+            for (String algorithm : list(spec, "algorithms")) {
+                String[] parameters = parameters(algorithm);
+                int[] milestones = ints(list(spec, algorithm + ".iterations"));
+                for (Map<String, Double> params : grid(spec, parameters)) {
+                    for (int r = 0; r < repeats; r++) {
+                        jobs.add(new AKExperimentJob(problem, algorithm, params, r, seed + r, milestones));
+                    }
+                }
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Run jobs on a work stealing pool, writing each one's results as it finishes
+     * @param jobs the jobs, run unseeded on more than one thread
+     * @param threads the number of threads
+     * @param store where the results go
+     * @param cache skips finished jobs and checkpoints running ones, or null to run every job from scratch
+     * @param checkpointSeconds the seconds between checkpoints
+     * @return the number of jobs that failed
+     */
+    public static int run(List<AKExperimentJob> jobs, int threads, final AKResultStore store,
+            final AKResultCache cache, final double checkpointSeconds) {
+        // only a job running alone can make its seed count
+        final List<AKExperimentJob> order = new ArrayList<AKExperimentJob>(jobs.size());
+        for (AKExperimentJob job : jobs) {
+            order.add(threads == 1 ? job : job.unseeded());
+        }
+        Collections.sort(order, new Comparator<AKExperimentJob>() {
+            public int compare(AKExperimentJob a, AKExperimentJob b) {
+                return Double.compare(b.cost(), a.cost());
+            }
+        });
+        final int total = order.size();
+        final AtomicInteger done = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(total);
+        long start = System.nanoTime();
+        for (final AKExperimentJob job : order) {
+            futures.add(pool.submit(new Callable<Void>() {
+                public Void call() throws IOException {
+                    List<AKExperimentJob.Result> results = cache == null ? null : cache.get(job);
+                    boolean cached = results != null;
+                    if (!cached) {
+                        results = job.run(cache, checkpointSeconds);
+                    }
+                    store.write(job, results);
+                    AKExperimentJob.Result last = results.get(results.size() - 1);
+                    System.out.println(done.incrementAndGet() + "/" + total + " " + job.getKey() + ": "
+                            + last.getFitness() + " in " + last.getSeconds() + " seconds"
+                            + (cached ? ", cached" : ""));
+                    return null;
+                }
+            }));
+        }
+        int failed = 0;
+        for (int i = 0; i < total; i++) {
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e) {
+                failed++;
+                System.out.println("failed " + order.get(i).getKey() + ": " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
+                throw new RuntimeException(e);
+            }
+        }
+        pool.shutdown();
+        System.out.println(total - failed + " of " + total + " jobs in " + (System.nanoTime() - start) / 1e9
+                + " seconds on " + threads + " threads");
+        return failed;
+    }
+
+    /**
+     * Search the grid of each problem and algorithm with parameters by successive halving
+     * @param spec the spec
+     * @param threads the number of candidates to train at once
+     */
+    public static void halving(Properties spec, int threads) {
+        int min = Integer.parseInt(spec.getProperty("halving.min", "100").trim());
+        double eta = Double.parseDouble(spec.getProperty("halving.eta", "3").trim());
+        final long seed = Long.parseLong(spec.getProperty("seed", "1").trim());
+        for (String problemName : list(spec, "problems")) {
+            final AKExperimentProblem problem = AKExperimentProblem.forName(problemName, spec);
+            for (final String algorithm : list(spec, "algorithms")) {
+                final String[] parameters = parameters(algorithm);
+                if (parameters.length == 1) {
+                    continue;
+                }
+                final int[] milestones = ints(list(spec, algorithm + ".iterations"));
+                int max = 0;
+                for (int milestone : milestones) {
+                    max = Math.max(max, milestone);
+                }
+                List<double[]> configs = new ArrayList<double[]>();
+                for (Map<String, Double> params : grid(spec, parameters)) {
+                    double[] values = new double[params.size()];
+                    int i = 0;
+                    for (double value : params.values()) {
+                        values[i++] = value;
+                    }
+                    configs.add(values);
+                }
+                AKSuccessiveHalving search = new AKSuccessiveHalving(min, max, eta, threads);
+                List<AKSuccessiveHalving.Result> ranking = search.run(configs, new AKSuccessiveHalving.Factory() {
+                    public AKSuccessiveHalving.Candidate create(double[] values) {
+                        Map<String, Double> params = new LinkedHashMap<String, Double>();
+                        for (int p = 1; p < parameters.length; p += 2) {
+                            params.put(parameters[p], values[p / 2]);
+                        }
+                        return new AKExperimentJob(problem, algorithm, params, 0, seed, milestones).candidate();
+                    }
+                });
+                search.shutdown();
+                System.out.println(problem.describe() + " " + algorithm + ", " + search.getSpent() + " of "
+                        + (long) configs.size() * max + " grid iterations\n" + AKSuccessiveHalving.table(ranking));
+            }
+        }
+    }
+
+    /**
+     * Every combination of the values the spec lists for some parameters
+     */
+    private static List<Map<String, Double>> grid(Properties spec, String[] parameters) {
+        List<Map<String, Double>> grid = new ArrayList<Map<String, Double>>();
+        grid.add(new LinkedHashMap<String, Double>());
+        for (int p = 1; p < parameters.length; p += 2) {
+            String key = parameters[0] + "." + parameters[p];
+            List<String> values = spec.containsKey(key) ? list(spec, key)
+                    : Collections.singletonList(parameters[p + 1]);
+            List<Map<String, Double>> next = new ArrayList<Map<String, Double>>(grid.size() * values.size());
+            for (Map<String, Double> partial : grid) {
+                for (String value : values) {
+                    Map<String, Double> params = new LinkedHashMap<String, Double>(partial);
+                    params.put(parameters[p], Double.parseDouble(value));
+                    next.add(params);
+                }
+            }
+            grid = next;
+        }
+        return grid;
+    }
+
+    private static String[] parameters(String algorithm) {
+        for (String[] parameters : PARAMETERS) {
+            if (parameters[0].equals(algorithm)) {
+                return parameters;
+            }
+        }
+        throw new IllegalArgumentException("unknown algorithm " + algorithm + ", expected rhc, sa, ga or mimic");
+    }
+
+    private static List<String> list(Properties spec, String key) {
+        String value = spec.getProperty(key);
+        if (value == null || value.trim().length() == 0) {
+            throw new IllegalArgumentException("the spec has no " + key);
+        }
+        List<String> items = new ArrayList<String>();
+        for (String item : value.split(",")) {
+            if (item.trim().length() > 0) {
+                items.add(item.trim());
+            }
+        }
+        return items;
+    }
+
+    private static int[] ints(List<String> values) {
+        int[] ints = new int[values.size()];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = (int) Double.parseDouble(values.get(i));
+        }
+        return ints;
+    }
+}
@@ -0,0 +1,137 @@
+package opt.test;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Runs the cells of a hyperparameter grid search concurrently on a worker pool.
+ * Every cell is an independent task that builds its own network, problem and
+ * optimizer, so cells share nothing but read only data. Results come back as a
+ * table whose rows are in the order the cells were added, which is the order
+ * the old sequential loops visited them.
+ *
+ * A cell may return anything; AKTrialRunner runs its trials as cells that
+ * return the results of every milestone they pass.
+ *
+ * @param <T> what a cell returns
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKGridSearch<T> {
+    /** The pool the cells run on */
+    private final AKWorkerPool pool;
+    /** The cells, in grid order */
+    private final List<Callable<T>> cells = new ArrayList<Callable<T>>();
+
+    /**
+     * Make a new grid search
+     * @param threads the number of cells to run at once
+     */
+    public AKGridSearch(int threads) {
+        this.pool = new AKWorkerPool(threads);
+    }
+
+    /**
+     * Add a cell to the grid
+     * @param cell the cell, which trains and scores one configuration
+     */
+    public void add(Callable<T> cell) {
+        cells.add(cell);
+    }
+
+    /**
+     * Run every cell added so far, then stop the worker threads
+     * @return the results table, in grid order
+     */
+    public List<T> run() {
+        List<T> results = pool.invokeAll(cells);
+        cells.clear();
+        pool.shutdown();
+        return results;
+    }
+
+    /**
+     * Format a results table with one row per cell
+     * @param results the results
+     * @return the table
+     */
+    public static String table(List<Result> results) {
+        DecimalFormat df = new DecimalFormat("0.000");
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-50s %10s %10s %10s %10s %10s%n",
+                "configuration", "correct", "incorrect", "accuracy", "train (s)", "test (s)"));
+        for (Result r : results) {
+            sb.append(String.format("%-50s %10d %10d %10s %10s %10s%n", r.getLabel(),
+                    (int) r.getCorrect(), (int) r.getIncorrect(), df.format(r.getAccuracy()),
+                    df.format(r.getTrainingTime()), df.format(r.getTestingTime())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * One row of the results table
+     */
+    public static class Result {
+        /** The configuration label */
+        private final String label;
+        /** The hyperparameters of the cell */
+        private final double[] params;
+        /** The number of correctly classified test instances */
+        private final double correct;
+        /** The number of incorrectly classified test instances */
+        private final double incorrect;
+        /** The training time in seconds */
+        private final double trainingTime;
+        /** The testing time in seconds */
+        private final double testingTime;
+
+        /**
+         * Make a new result
+         * @param label the configuration label
+         * @param params the hyperparameters
+         * @param correct the correct count
+         * @param incorrect the incorrect count
+         * @param trainingTime the training time in seconds
+         * @param testingTime the testing time in seconds
+         */
+        public Result(String label, double[] params, double correct, double incorrect,
+                double trainingTime, double testingTime) {
+            this.label = label;
+            this.params = params;
+            this.correct = correct;
+            this.incorrect = incorrect;
+            this.trainingTime = trainingTime;
+            this.testingTime = testingTime;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public double[] getParams() {
+            return params;
+        }
+
+        public double getCorrect() {
+            return correct;
+        }
+
+        public double getIncorrect() {
+            return incorrect;
+        }
+
+        public double getAccuracy() {
+            return correct / (correct + incorrect);
+        }
+
+        public double getTrainingTime() {
+            return trainingTime;
+        }
+
+        public double getTestingTime() {
+            return testingTime;
+        }
+    }
+}
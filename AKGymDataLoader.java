@@ -0,0 +1,407 @@
+package opt.test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Loads the gym occupancy csv. Each row is a head count, a timestamp and nine
+ * numeric columns; it becomes a class label (the head count in buckets of 20)
+ * and ten features (the nine numeric columns followed by the day of month).
+ *
+ * The csv is memory mapped and parsed in one pass, split across threads at
+ * line boundaries for large files. The parsed table is written next to the
+ * csv as a binary columnar cache, which later runs memory map instead of
+ * parsing again. The cache is rebuilt whenever the csv's size or modification
+ * time changes.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKGymDataLoader {
+    /** The number of features per row */
+    public static final int FEATURES = 10;
+    /** The width of a label bucket */
+    private static final int BUCKET = 20;
+    /** The suffix added to the csv path to name its cache */
+    private static final String CACHE_SUFFIX = ".akcache";
+    /** The cache file magic number */
+    private static final int MAGIC = 0x414B4743;
+    /** The cache format version */
+    private static final int VERSION = 1;
+    /** The size of the cache header in bytes */
+    private static final int HEADER = 4 + 4 + 8 + 8 + 4 + 4;
+    /** The smallest file worth splitting across threads */
+    private static final int MIN_CHUNK = 1 << 20;
+    /** Exact powers of ten for the fast double path */
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    /** The pool used to parse and transpose */
+    private final AKWorkerPool pool;
+
+    /**
+     * Make a new loader
+     * @param threads the number of threads to parse with
+     */
+    public AKGymDataLoader(int threads) {
+        this.pool = new AKWorkerPool(threads);
+    }
+
+    /**
+     * Load the csv, from its cache if the cache is current
+     * @param path the path to the csv
+     * @return the table
+     * @throws IOException if the csv can't be read or is malformed
+     */
+    public Table load(String path) throws IOException {
+        File csv = new File(path);
+        File cache = new File(path + CACHE_SUFFIX);
+        try {
+            Table table = null;
+            if (cache.isFile()) {
+                table = readCache(cache, csv);
+            }
+            if (table == null) {
+                table = parse(csv);
+                try {
+                    writeCache(table, cache, csv);
+                } catch (IOException e) {
+                    System.err.println("Could not write data cache " + cache + ": " + e.getMessage());
+                }
+            }
+            return table;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Parse the csv, skipping its header line
+     * @param csv the csv file
+     * @return the table
+     * @throws IOException if the csv can't be read or is malformed
+     */
+    public Table parse(File csv) throws IOException {
+        final ByteBuffer buf = map(csv);
+        int length = buf.limit();
+
+        // skip the header
+        int start = 0;
+        while (start < length && buf.get(start) != '\n') {
+            start++;
+        }
+        start++;
+
+        // split at line boundaries
+        int chunks = Math.max(1, Math.min(pool.getThreads(), (length - start) / MIN_CHUNK));
+        final int[] bounds = new int[chunks + 1];
+        bounds[0] = Math.min(start, length);
+        for (int c = 1; c < chunks; c++) {
+            int b = Math.max(bounds[c - 1], start + (int) ((long) (length - start) * c / chunks));
+            while (b < length && buf.get(b - 1) != '\n') {
+                b++;
+            }
+            bounds[c] = b;
+        }
+        bounds[chunks] = length;
+
+        // count the rows in each chunk to find where each chunk's rows go
+        List<Callable<Integer>> counts = new ArrayList<Callable<Integer>>();
+        for (int c = 0; c < chunks; c++) {
+            final int from = bounds[c], to = bounds[c + 1];
+            counts.add(new Callable<Integer>() {
+                public Integer call() {
+                    return countRows(buf, from, to);
+                }
+            });
+        }
+        final int[] firstRow = new int[chunks + 1];
+        List<Integer> rowCounts = pool.invokeAll(counts);
+        for (int c = 0; c < chunks; c++) {
+            firstRow[c + 1] = firstRow[c] + rowCounts.get(c);
+        }
+
+        final Table table = new Table(firstRow[chunks]);
+        List<Callable<Void>> parsers = new ArrayList<Callable<Void>>();
+        for (int c = 0; c < chunks; c++) {
+            final int from = bounds[c], to = bounds[c + 1], row = firstRow[c];
+            parsers.add(new Callable<Void>() {
+                public Void call() {
+                    parseRows(buf, from, to, row, table);
+                    return null;
+                }
+            });
+        }
+        try {
+            pool.invokeAll(parsers);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed " + csv + ": " + e.getMessage(), e);
+        }
+        return table;
+    }
+
+    /**
+     * Count the non blank lines in [from, to)
+     */
+    private static int countRows(ByteBuffer buf, int from, int to) {
+        int rows = 0;
+        boolean blank = true;
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            if (b == '\n') {
+                if (!blank) {
+                    rows++;
+                }
+                blank = true;
+            } else if (b != '\r') {
+                blank = false;
+            }
+        }
+        return blank ? rows : rows + 1;
+    }
+
+    /**
+     * Parse the lines in [from, to) into the table starting at the given row
+     */
+    private static void parseRows(ByteBuffer buf, int from, int to, int row, Table table) {
+        double[] features = table.features;
+        int i = from;
+        while (i < to) {
+            int end = i;
+            while (end < to && buf.get(end) != '\n') {
+                end++;
+            }
+            int lineEnd = end;
+            if (lineEnd > i && buf.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd > i) {
+                int field = i;
+                int fieldEnd = nextComma(buf, field, lineEnd);
+                // y label (buckets of 20)
+                table.labels[row] = parseInt(buf, field, fieldEnd) / BUCKET;
+
+                // X vector (day of month, characters 8 and 9 of the timestamp)
+                field = fieldEnd + 1;
+                fieldEnd = nextComma(buf, field, lineEnd);
+                if (fieldEnd - field < 10) {
+                    throw new NumberFormatException("bad timestamp on row " + row);
+                }
+                features[row * FEATURES + FEATURES - 1] = parseInt(buf, field + 8, field + 10);
+
+                // X vector (others)
+                for (int j = 0; j < FEATURES - 1; j++) {
+                    field = fieldEnd + 1;
+                    fieldEnd = nextComma(buf, field, lineEnd);
+                    features[row * FEATURES + j] = parseDouble(buf, field, fieldEnd);
+                }
+                row++;
+            }
+            i = end + 1;
+        }
+    }
+
+    private static int nextComma(ByteBuffer buf, int from, int to) {
+        if (from > to) {
+            throw new NumberFormatException("missing field");
+        }
+        int i = from;
+        while (i < to && buf.get(i) != ',') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int parseInt(ByteBuffer buf, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException("empty field");
+        }
+        int i = from;
+        boolean negative = buf.get(i) == '-';
+        if (negative || buf.get(i) == '+') {
+            i++;
+        }
+        int value = 0;
+        for (; i < to; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) {
+                throw new NumberFormatException("not an integer: " + text(buf, from, to));
+            }
+            value = value * 10 + d;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a plain decimal exactly. Up to 15 significant digits and 22 decimal
+     * places the result is a quotient of two exactly representable doubles, so
+     * it is correctly rounded; anything else falls back to Double.parseDouble.
+     */
+    private static double parseDouble(ByteBuffer buf, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException("empty field");
+        }
+        int i = from;
+        boolean negative = buf.get(i) == '-';
+        if (negative || buf.get(i) == '+') {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean point = false;
+        for (; i < to; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (point) {
+                    scale++;
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                return Double.parseDouble(text(buf, from, to));
+            }
+        }
+        if (digits > 15 || scale >= POW10.length) {
+            return Double.parseDouble(text(buf, from, to));
+        }
+        double value = mantissa / POW10[scale];
+        return negative ? -value : value;
+    }
+
+    private static String text(ByteBuffer buf, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            bytes[i - from] = buf.get(i);
+        }
+        return new String(bytes, java.nio.charset.StandardCharsets.US_ASCII).trim();
+    }
+
+    /**
+     * Read the cache if it was built from the current csv
+     * @return the table, or null if the cache is stale or unreadable
+     */
+    private Table readCache(File cache, File csv) throws IOException {
+        ByteBuffer buf = map(cache);
+        if (buf.limit() < HEADER || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION
+                || buf.getLong(8) != csv.length() || buf.getLong(16) != csv.lastModified()
+                || buf.getInt(28) != FEATURES) {
+            return null;
+        }
+        final int rows = buf.getInt(24);
+        if (buf.limit() != HEADER + 4L * rows + 8L * rows * FEATURES) {
+            return null;
+        }
+        final Table table = new Table(rows);
+        buf.position(HEADER);
+        IntBuffer labels = buf.slice().asIntBuffer();
+        labels.get(table.labels);
+        buf.position(HEADER + 4 * rows);
+        final DoubleBuffer columns = buf.slice().asDoubleBuffer();
+
+        // columns on disk, rows in memory
+        pool.forRange(rows, 1 << 16, new AKWorkerPool.RangeBody() {
+            public void run(int from, int to) {
+                for (int j = 0; j < FEATURES; j++) {
+                    int column = j * rows;
+                    for (int i = from; i < to; i++) {
+                        table.features[i * FEATURES + j] = columns.get(column + i);
+                    }
+                }
+            }
+        });
+        return table;
+    }
+
+    /**
+     * Write the table as a columnar cache, replacing the old one atomically
+     */
+    private static void writeCache(Table table, File cache, File csv) throws IOException {
+        File temp = new File(cache.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(csv.length());
+            out.writeLong(csv.lastModified());
+            out.writeInt(table.rows);
+            out.writeInt(FEATURES);
+            for (int i = 0; i < table.rows; i++) {
+                out.writeInt(table.labels[i]);
+            }
+            for (int j = 0; j < FEATURES; j++) {
+                for (int i = 0; i < table.rows; i++) {
+                    out.writeDouble(table.features[i * FEATURES + j]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2GB");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * The parsed data set: one class label per row and a row major feature matrix
+     */
+    public static class Table {
+        /** The number of rows */
+        private final int rows;
+        /** The class of each row */
+        private final int[] labels;
+        /** The features, FEATURES per row */
+        private final double[] features;
+
+        private Table(int rows) {
+            this.rows = rows;
+            this.labels = new int[rows];
+            this.features = new double[rows * FEATURES];
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int[] getLabels() {
+            return labels;
+        }
+
+        public double[] getFeatures() {
+            return features;
+        }
+    }
+}
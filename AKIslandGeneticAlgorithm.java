@@ -0,0 +1,241 @@
+package opt.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+
+import opt.EvaluationFunction;
+import opt.OptimizationAlgorithm;
+import opt.ga.GeneticAlgorithmProblem;
+import shared.Instance;
+
+/**
+ * An island model genetic algorithm. The population is split into islands,
+ * each an AKParallelGeneticAlgorithm scored on its own thread with its own
+ * evaluation function, and every call to train() runs one generation on all of
+ * the islands at once. Every interval generations each island copies its
+ * fittest individuals into the bounded inboxes of the islands the topology
+ * links it to, and at the start of its next generation replaces its least fit
+ * individuals with whatever has arrived. A full inbox drops the newcomers
+ * rather than making the sender wait.
+ *
+ * The population and the numbers to mate and mutate are totals over the
+ * islands, spread as evenly as they go with the remainders on different
+ * islands, so a generation makes as many children and mutants as one
+ * population of the same size would. There are never so many islands that
+ * one would have fewer than MIN_ISLAND_SIZE individuals.
+ *
+ * The islands share the problem's operators, which draw from
+ * Distribution.random as the threads reach them, so unlike the single
+ * population algorithms a run is not repeatable for a fixed seed.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKIslandGeneticAlgorithm extends OptimizationAlgorithm {
+    /** How islands are linked for migration */
+    public enum Topology {
+        /** Each island sends to the next, the last to the first */
+        RING,
+        /** Each island sends to every other island */
+        FULL
+    }
+
+    /** The fewest individuals an island is given, unless the whole population is smaller */
+    public static final int MIN_ISLAND_SIZE = 10;
+
+    /** The islands */
+    private final AKParallelGeneticAlgorithm[] islands;
+    /** The inbox of each island */
+    private final List<BlockingQueue<Migrant>> inboxes;
+    /** Runs the islands */
+    private final AKWorkerPool pool;
+    /** How the islands are linked */
+    private final Topology topology;
+    /** The generations between migrations */
+    private final int interval;
+    /** The individuals each island sends per link per migration */
+    private final int migrants;
+    /** The generations run so far */
+    private int generation;
+
+    /**
+     * Make a new island genetic algorithm for a thread safe evaluation function
+     * @param islandCount the most islands, each run on its own thread
+     * @param populationSize the population size over all the islands
+     * @param toMate the number of children made by crossover each generation over all the islands
+     * @param toMutate the number of individuals mutated each generation over all the islands
+     * @param gap the problem
+     * @param ef the problem's evaluation function, shared by the islands
+     * @param topology how the islands are linked
+     * @param interval the generations between migrations
+     * @param migrants the individuals each island sends per link per migration
+     */
+    public AKIslandGeneticAlgorithm(int islandCount, int populationSize, int toMate, int toMutate,
+            GeneticAlgorithmProblem gap, final EvaluationFunction ef, Topology topology, int interval, int migrants) {
+        this(islandCount, populationSize, toMate, toMutate, gap, new AKPopulationEvaluator.Factory() {
+            public EvaluationFunction create() {
+                return ef;
+            }
+        }, topology, interval, migrants);
+    }
+
+    /**
+     * Make a new island genetic algorithm that gives every island its own evaluation function
+     * @param islandCount the most islands, each run on its own thread
+     * @param populationSize the population size over all the islands
+     * @param toMate the number of children made by crossover each generation over all the islands
+     * @param toMutate the number of individuals mutated each generation over all the islands
+     * @param gap the problem
+     * @param factory makes an evaluation function for each island
+     * @param topology how the islands are linked
+     * @param interval the generations between migrations
+     * @param migrants the individuals each island sends per link per migration
+     */
+    public AKIslandGeneticAlgorithm(int islandCount, int populationSize, int toMate, int toMutate,
+            GeneticAlgorithmProblem gap, AKPopulationEvaluator.Factory factory, Topology topology, int interval,
+            int migrants) {
+        super(gap);
+        if (populationSize < 1) {
+            throw new IllegalArgumentException("the population must have someone in it, got " + populationSize);
+        }
+        islandCount = Math.max(1, Math.min(islandCount, populationSize / MIN_ISLAND_SIZE));
+        this.topology = topology;
+        this.interval = interval;
+        this.migrants = migrants;
+        this.pool = new AKWorkerPool(islandCount);
+        this.islands = new AKParallelGeneticAlgorithm[islandCount];
+        this.inboxes = new ArrayList<BlockingQueue<Migrant>>(islandCount);
+        int links = topology == Topology.RING ? 1 : islandCount - 1;
+        for (int i = 0; i < islandCount; i++) {
+            int size = share(populationSize, islandCount, i);
+            // mate remainders go to the first islands, mutate remainders to the last
+            int mate = Math.min(size, share(toMate, islandCount, i));
+            int mutate = Math.min(size, share(toMutate, islandCount, islandCount - 1 - i));
+            islands[i] = new AKParallelGeneticAlgorithm(size, mate, mutate, gap,
+                    new AKPopulationEvaluator(factory.create(), 1));
+            inboxes.add(new ArrayBlockingQueue<Migrant>(Math.max(1, links * migrants)));
+        }
+    }
+
+    /**
+     * Get island i's share of a total split as evenly as it goes
+     */
+    private static int share(int total, int islands, int i) {
+        return total / islands + (i < total % islands ? 1 : 0);
+    }
+
+    /**
+     * Run one generation on every island, migrating every interval generations
+     * @return the best fitness on any island
+     * @see shared.Trainer#train()
+     */
+    public double train() {
+        final boolean migrate = interval > 0 && migrants > 0 && islands.length > 1
+                && ++generation % interval == 0;
+        List<Callable<Double>> tasks = new ArrayList<Callable<Double>>(islands.length);
+        for (int i = 0; i < islands.length; i++) {
+            final int island = i;
+            tasks.add(new Callable<Double>() {
+                public Double call() {
+                    settle(island);
+                    islands[island].train();
+                    if (migrate) {
+                        emigrate(island);
+                    }
+                    return bestValue(islands[island]);
+                }
+            });
+        }
+        double best = Double.NEGATIVE_INFINITY;
+        for (double value : pool.invokeAll(tasks)) {
+            best = Math.max(best, value);
+        }
+        return best;
+    }
+
+    /**
+     * Copy an island's fittest individuals to the islands it is linked to
+     */
+    private void emigrate(int island) {
+        AKParallelGeneticAlgorithm from = islands[island];
+        int[] best = from.best(migrants);
+        for (int j = 0; j < islands.length; j++) {
+            boolean linked = topology == Topology.RING ? j == (island + 1) % islands.length : j != island;
+            if (!linked) {
+                continue;
+            }
+            for (int k = 0; k < best.length; k++) {
+                Instance copy = (Instance) from.getPopulation()[best[k]].copy();
+                inboxes.get(j).offer(new Migrant(copy, from.getValues()[best[k]]));
+            }
+        }
+    }
+
+    /**
+     * Take in whatever has arrived in an island's inbox
+     */
+    private void settle(int island) {
+        List<Migrant> arrived = new ArrayList<Migrant>();
+        inboxes.get(island).drainTo(arrived);
+        if (arrived.isEmpty()) {
+            return;
+        }
+        Instance[] newcomers = new Instance[arrived.size()];
+        double[] newcomerValues = new double[arrived.size()];
+        for (int k = 0; k < newcomers.length; k++) {
+            newcomers[k] = arrived.get(k).instance;
+            newcomerValues[k] = arrived.get(k).value;
+        }
+        islands[island].immigrate(newcomers, newcomerValues);
+    }
+
+    private static double bestValue(AKParallelGeneticAlgorithm island) {
+        return island.getValues()[island.best(1)[0]];
+    }
+
+    /**
+     * @see opt.OptimizationAlgorithm#getOptimal()
+     */
+    public Instance getOptimal() {
+        AKParallelGeneticAlgorithm best = islands[0];
+        for (int i = 1; i < islands.length; i++) {
+            if (bestValue(islands[i]) > bestValue(best)) {
+                best = islands[i];
+            }
+        }
+        return best.getOptimal();
+    }
+
+    /**
+     * Get the islands
+     * @return the islands
+     */
+    public AKParallelGeneticAlgorithm[] getIslands() {
+        return islands;
+    }
+
+    /**
+     * Stop the island threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * An individual and its fitness on the way between islands
+     */
+    private static class Migrant {
+        /** The individual */
+        private final Instance instance;
+        /** Its fitness */
+        private final double value;
+
+        private Migrant(Instance instance, double value) {
+            this.instance = instance;
+            this.value = value;
+        }
+    }
+}
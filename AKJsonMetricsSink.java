@@ -0,0 +1,91 @@
+package opt.test;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes metrics samples as a JSON array with one object per sample. Counts
+ * that were not kept, and values JSON can't hold such as infinities, are
+ * written as null.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKJsonMetricsSink implements AKMetricsSink {
+    /** The output */
+    private final Writer out;
+    /** Whether a sample has been written yet */
+    private boolean first = true;
+
+    /**
+     * Write to a file, replacing it
+     * @param path the file
+     * @throws IOException if it can't be opened
+     */
+    public AKJsonMetricsSink(String path) throws IOException {
+        this(new FileWriter(path));
+    }
+
+    /**
+     * Write to a writer
+     * @param out the writer, closed with the sink
+     * @throws IOException if the array can't be opened
+     */
+    public AKJsonMetricsSink(Writer out) throws IOException {
+        this.out = new BufferedWriter(out);
+        this.out.write('[');
+    }
+
+    /**
+     * @see opt.test.AKMetricsSink#record(opt.test.AKRunMetrics.Sample)
+     */
+    public void record(AKRunMetrics.Sample s) throws IOException {
+        StringBuilder sb = new StringBuilder(first ? "\n" : ",\n");
+        sb.append("{\"run\":").append(quote(s.getRun()))
+                .append(",\"iteration\":").append(s.getIteration())
+                .append(",\"best\":").append(number(s.getBest()))
+                .append(",\"current\":").append(number(s.getCurrent()))
+                .append(",\"evaluations\":").append(count(s.getEvaluations()))
+                .append(",\"elapsed_ns\":").append(s.getElapsedNanos())
+                .append(",\"evaluations_per_second\":")
+                .append(s.getEvaluations() < 0 ? "null" : number(s.getEvaluationsPerSecond()))
+                .append(",\"accepted\":").append(count(s.getAccepted()))
+                .append(",\"rejected\":").append(count(s.getRejected())).append('}');
+        out.write(sb.toString());
+        first = false;
+    }
+
+    /**
+     * Close the array and the output
+     * @see opt.test.AKMetricsSink#close()
+     */
+    public void close() throws IOException {
+        out.write(first ? "]\n" : "\n]\n");
+        out.close();
+    }
+
+    private static String count(long count) {
+        return count < 0 ? "null" : Long.toString(count);
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value);
+    }
+
+    private static String quote(String text) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,386 @@
+package opt.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import dist.DiscreteDependencyTree;
+import dist.DiscretePermutationDistribution;
+import dist.DiscreteUniformDistribution;
+import dist.Distribution;
+import func.nn.backprop.BackPropagationNetwork;
+import func.nn.backprop.BackPropagationNetworkFactory;
+import opt.DiscreteChangeOneNeighbor;
+import opt.SwapNeighbor;
+import opt.example.ContinuousPeaksEvaluationFunction;
+import opt.example.NeuralNetworkOptimizationProblem;
+import opt.example.TravelingSalesmanCrossOver;
+import opt.example.TravelingSalesmanEvaluationFunction;
+import opt.example.TravelingSalesmanRouteEvaluationFunction;
+import opt.ga.MaxKColorFitnessFunction;
+import opt.ga.SingleCrossOver;
+import opt.ga.Vertex;
+import shared.DataSet;
+import shared.Instance;
+import shared.SumOfSquaresError;
+
+/**
+ * Micro benchmarks for the kernels the tests spend their time in: the
+ * evaluation functions, neighbor and crossover operators, the dependency tree
+ * fit and draw, and a network fitness pass, each next to its AK counterpart
+ * where there is one. Every kernel is warmed up, then run in timed batches,
+ * and reported as nanoseconds and bytes allocated per operation, the bytes
+ * read from the JVM's per thread allocation counter where it has one.
+ * Kernels returning a double hand it back unboxed, so the scoring kernels are
+ * not charged for a Double per call.
+ *
+ * Problem sizes come from system properties, each a comma separated list so
+ * one run can show how a kernel scales:
+ *   -Dbench.n=50,500     variables: cities, vertices or bits
+ *   -Dbench.k=8          colors for max k coloring
+ *   -Dbench.rows=2000    data set rows for the network pass
+ *   -Dbench.seconds=1    measuring time per kernel
+ * and a kernel name filter can be passed as the first argument.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKKernelBenchmark {
+    /** The last object result, kept so the JIT can't drop the work */
+    private static Object objectSink;
+    /** The double results folded together, kept so the JIT can't drop the work */
+    private static long doubleSink;
+
+    /** The warm up time per kernel in seconds */
+    private static final double WARMUP_SECONDS = 0.5;
+    /** The neighbors per max k coloring vertex, as in AKMaxKColoringTest */
+    private static final int L = 4;
+    /** The samples a dependency tree is fit to, as MIMIC keeps */
+    private static final int KEPT = 50;
+    /** The network layers, as in AKNeuralNetTest */
+    private static final int[] LAYERS = { 10, 50, 50, 50, 8 };
+
+    /**
+     * Run the benchmarks
+     * @param args an optional substring kernels must contain to run
+     */
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        int[] ns = ints(System.getProperty("bench.n", "50,500"));
+        int[] ks = ints(System.getProperty("bench.k", "8"));
+        int[] rowCounts = ints(System.getProperty("bench.rows", "2000"));
+        double seconds = Double.parseDouble(System.getProperty("bench.seconds", "1"));
+
+        System.out.println("kernel\tN\tK\trows\tns/op\tB/op");
+        for (int n : ns) {
+            for (int k : ks) {
+                for (int rows : rowCounts) {
+                    for (Map.Entry<String, Kernel> e : kernels(n, k, rows).entrySet()) {
+                        if (!e.getKey().contains(filter)) {
+                            continue;
+                        }
+                        double[] result = measure(e.getValue(), seconds);
+                        System.out.println(e.getKey() + "\t" + n + "\t" + k + "\t" + rows + "\t"
+                                + String.format("%.1f\t%.1f", result[0], result[1]));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Build every kernel for one problem size
+     */
+    private static Map<String, Kernel> kernels(final int n, int k, int rows) {
+        Map<String, Kernel> kernels = new LinkedHashMap<String, Kernel>();
+        Random random = new Random(n * 31 + k);
+        Distribution.random.setSeed(n);
+
+        // traveling salesman
+        double[][] points = new double[n][2];
+        for (int i = 0; i < n; i++) {
+            points[i][0] = random.nextDouble();
+            points[i][1] = random.nextDouble();
+        }
+        final TravelingSalesmanEvaluationFunction route = new TravelingSalesmanRouteEvaluationFunction(points);
+        final AKTravelingSalesmanDeltaFunction delta = new AKTravelingSalesmanDeltaFunction(points);
+        Distribution permutations = new DiscretePermutationDistribution(n);
+        final Instance tour = permutations.sample(null), otherTour = permutations.sample(null);
+        final double tourValue = delta.value(tour);
+        final SwapNeighbor swap = new SwapNeighbor();
+        final TravelingSalesmanCrossOver tourCrossover = new TravelingSalesmanCrossOver(route);
+        final AKSwapMoveGenerator swaps = new AKSwapMoveGenerator();
+        kernels.put("TravelingSalesmanRouteEvaluationFunction.value", new DoubleKernel() {
+            public double run() {
+                return route.value(tour);
+            }
+        });
+        kernels.put("AKTravelingSalesmanDeltaFunction.valueAfter", new DoubleKernel() {
+            public double run() {
+                return delta.valueAfter(tour, tourValue, swaps.propose(tour));
+            }
+        });
+        kernels.put("SwapNeighbor.neighbor", new ObjectKernel() {
+            public Object run() {
+                return swap.neighbor(tour);
+            }
+        });
+        kernels.put("TravelingSalesmanCrossOver.mate", new ObjectKernel() {
+            public Object run() {
+                return tourCrossover.mate(tour, otherTour);
+            }
+        });
+
+        // max k coloring, the random graph of AKMaxKColoringTest and a CSR graph of the same size
+        Vertex[] vertices = new Vertex[n];
+        int[] from = new int[n * L], to = new int[n * L];
+        for (int i = 0; i < n; i++) {
+            vertices[i] = new Vertex();
+            vertices[i].setAdjMatrixSize(L);
+            for (int j = 0; j < L; j++) {
+                int neighbor = random.nextInt(n * L);
+                vertices[i].getAadjacencyColorMatrix().add(neighbor);
+                from[i * L + j] = i;
+                to[i * L + j] = neighbor % n;
+            }
+        }
+        final MaxKColorFitnessFunction maxK = new MaxKColorFitnessFunction(vertices);
+        final Instance colors = new DiscretePermutationDistribution(k).sample(null);
+        final AKMaxKColorCsrFitness csr = new AKMaxKColorCsrFitness(AKCsrGraph.fromEdges(n, from, to, n * L));
+        int[] colorRanges = new int[n];
+        Arrays.fill(colorRanges, k);
+        final Instance coloring = new DiscreteUniformDistribution(colorRanges).sample(null);
+        final double coloringValue = csr.value(coloring);
+        final AKChangeOneMoveGenerator recolors = new AKChangeOneMoveGenerator(colorRanges);
+        kernels.put("MaxKColorFitnessFunction.value", new DoubleKernel() {
+            public double run() {
+                return maxK.value(colors);
+            }
+        });
+        kernels.put("AKMaxKColorCsrFitness.value", new DoubleKernel() {
+            public double run() {
+                return csr.value(coloring);
+            }
+        });
+        kernels.put("AKMaxKColorCsrFitness.valueAfter", new DoubleKernel() {
+            public double run() {
+                return csr.valueAfter(coloring, coloringValue, recolors.propose(coloring));
+            }
+        });
+
+        // continuous peaks, as doubles and as packed bits
+        final int[] bitRanges = new int[n];
+        Arrays.fill(bitRanges, 2);
+        final ContinuousPeaksEvaluationFunction peaks = new ContinuousPeaksEvaluationFunction(n / 2);
+        final AKContinuousPeaksBitFunction bitPeaks = new AKContinuousPeaksBitFunction(n / 2);
+        Distribution uniformBits = new DiscreteUniformDistribution(bitRanges);
+        final Instance bits = uniformBits.sample(null), otherBits = uniformBits.sample(null);
+        final AKBitStringProblem bitProblem = new AKBitStringProblem(bitPeaks, n);
+        final Instance packed = bitProblem.random(), otherPacked = bitProblem.random();
+        final double packedValue = bitPeaks.value(packed);
+        final AKChangeOneMoveGenerator flips = new AKChangeOneMoveGenerator(bitRanges);
+        final DiscreteChangeOneNeighbor changeOne = new DiscreteChangeOneNeighbor(bitRanges);
+        final SingleCrossOver singleCrossover = new SingleCrossOver();
+        kernels.put("ContinuousPeaksEvaluationFunction.value", new DoubleKernel() {
+            public double run() {
+                return peaks.value(bits);
+            }
+        });
+        kernels.put("AKContinuousPeaksBitFunction.value", new DoubleKernel() {
+            public double run() {
+                return bitPeaks.value(packed);
+            }
+        });
+        kernels.put("AKContinuousPeaksBitFunction.valueAfter", new DoubleKernel() {
+            public double run() {
+                return bitPeaks.valueAfter(packed, packedValue, flips.propose(packed));
+            }
+        });
+        kernels.put("DiscreteChangeOneNeighbor.neighbor", new ObjectKernel() {
+            public Object run() {
+                return changeOne.neighbor(bits);
+            }
+        });
+        kernels.put("AKBitStringProblem.neighbor", new ObjectKernel() {
+            public Object run() {
+                return bitProblem.neighbor(packed);
+            }
+        });
+        kernels.put("SingleCrossOver.mate", new ObjectKernel() {
+            public Object run() {
+                return singleCrossover.mate(bits, otherBits);
+            }
+        });
+        kernels.put("AKBitStringProblem.mate", new ObjectKernel() {
+            public Object run() {
+                return bitProblem.mate(packed, otherPacked);
+            }
+        });
+
+        // the dependency tree MIMIC refits, over the kept continuous peaks samples
+        Instance[] kept = new Instance[KEPT];
+        for (int i = 0; i < KEPT; i++) {
+            kept[i] = uniformBits.sample(null);
+        }
+        final DataSet keptSet = new DataSet(kept);
+        final DiscreteDependencyTree tree = new DiscreteDependencyTree(.1, bitRanges);
+        final AKParallelDependencyTree parallelTree = new AKParallelDependencyTree(.1, bitRanges, 1);
+        tree.estimate(keptSet);
+        parallelTree.estimate(keptSet);
+        kernels.put("DiscreteDependencyTree.estimate", new ObjectKernel() {
+            public Object run() {
+                tree.estimate(keptSet);
+                return tree;
+            }
+        });
+        kernels.put("AKParallelDependencyTree.estimate", new ObjectKernel() {
+            public Object run() {
+                parallelTree.estimate(keptSet);
+                return parallelTree;
+            }
+        });
+        kernels.put("DiscreteDependencyTree.sample", new ObjectKernel() {
+            public Object run() {
+                return tree.sample(null);
+            }
+        });
+        kernels.put("AKParallelDependencyTree.sample", new ObjectKernel() {
+            public Object run() {
+                return parallelTree.sample(null);
+            }
+        });
+
+        // one network fitness pass over a random data set shaped like the gym data
+        int features = LAYERS[0], classes = LAYERS[LAYERS.length - 1];
+        double[] matrix = new double[rows * features];
+        int[] labels = new int[rows];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = random.nextDouble();
+        }
+        for (int i = 0; i < rows; i++) {
+            labels[i] = random.nextInt(classes);
+        }
+        AKDataSet data = new AKDataSet(matrix, labels, features, classes);
+        BackPropagationNetworkFactory factory = new BackPropagationNetworkFactory();
+        BackPropagationNetwork network = factory.createClassificationNetwork(LAYERS);
+        final NeuralNetworkOptimizationProblem nnop = new NeuralNetworkOptimizationProblem(
+                new DataSet(data.toInstances()), network, new SumOfSquaresError());
+        final AKNetworkOptimizationProblem akNnop = new AKNetworkOptimizationProblem(data,
+                factory.createClassificationNetwork(LAYERS));
+        final AKNetworkOptimizationProblem floatNnop = new AKNetworkOptimizationProblem(data,
+                factory.createClassificationNetwork(LAYERS));
+        floatNnop.setFloatForward(true);
+        final AKNetworkOptimizationProblem matrixNnop = new AKNetworkOptimizationProblem(data,
+                factory.createClassificationNetwork(LAYERS));
+        matrixNnop.setMatrixForward(true);
+        final Instance weights = akNnop.random();
+        kernels.put("NeuralNetworkOptimizationProblem.value", new DoubleKernel() {
+            public double run() {
+                return nnop.value(weights);
+            }
+        });
+        kernels.put("AKNetworkOptimizationProblem.value", new DoubleKernel() {
+            public double run() {
+                return akNnop.value(weights);
+            }
+        });
+        kernels.put("AKFloatNetwork.value", new DoubleKernel() {
+            public double run() {
+                return floatNnop.value(weights);
+            }
+        });
+        kernels.put("AKMatrixNetwork.value", new DoubleKernel() {
+            public double run() {
+                return matrixNnop.value(weights);
+            }
+        });
+        return kernels;
+    }
+
+    /**
+     * Warm a kernel up, then time it in doubling batches until the measuring time is used
+     * @return the nanoseconds and bytes allocated per operation, bytes NaN if the JVM can't count them
+     */
+    private static double[] measure(Kernel kernel, double seconds) {
+        long warmupEnd = System.nanoTime() + (long) (WARMUP_SECONDS * 1e9);
+        while (System.nanoTime() < warmupEnd) {
+            kernel.step();
+        }
+        long ops = 0, nanos = 0, batch = 1, bytes = 0;
+        long budget = (long) (seconds * 1e9);
+        while (nanos < budget) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            for (long i = 0; i < batch; i++) {
+                kernel.step();
+            }
+            nanos += System.nanoTime() - start;
+            bytes += allocatedBytes() - allocated;
+            ops += batch;
+            batch *= 2;
+        }
+        return new double[] { (double) nanos / ops, allocatedBytes() < 0 ? Double.NaN : (double) bytes / ops };
+    }
+
+    /**
+     * The bytes the current thread has allocated, or -1 if the JVM doesn't say
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static int[] ints(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    /**
+     * One operation of a kernel
+     */
+    private abstract static class Kernel {
+        /**
+         * Run the operation once and keep its result, so the work can't be optimized away
+         */
+        abstract void step();
+    }
+
+    /**
+     * A kernel whose operation returns an object
+     */
+    private abstract static class ObjectKernel extends Kernel {
+        /**
+         * Run the operation once
+         * @return the result
+         */
+        public abstract Object run();
+
+        final void step() {
+            objectSink = run();
+        }
+    }
+
+    /**
+     * A kernel whose operation returns a double, kept without boxing it
+     */
+    private abstract static class DoubleKernel extends Kernel {
+        /**
+         * Run the operation once
+         * @return the result
+         */
+        public abstract double run();
+
+        final void step() {
+            doubleSink += Double.doubleToRawLongBits(run());
+        }
+    }
+}
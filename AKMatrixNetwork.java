@@ -0,0 +1,541 @@
+package opt.test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import func.nn.Layer;
+import func.nn.LayeredNetwork;
+import func.nn.Link;
+import func.nn.backprop.BackPropagationNetwork;
+import util.linalg.DenseVector;
+import util.linalg.Vector;
+
+/**
+ * A classification network kept as one weight matrix per layer inside a flat
+ * weight vector, scoring a data set a block of rows at a time. The network's
+ * setWeights() scatters a vector into a Link object per weight and run()
+ * then walks the object graph one row at a time; here each layer of a block
+ * is a matrix product of the block's activations with the layer's weights,
+ * and each weight row is used for every row of the block while it is in
+ * cache.
+ *
+ * When the links of each layer pair sit in the weight vector as a row or
+ * column major matrix, which AKNetworkLayout finds out from the network,
+ * the matrices are views into the optimizer's own weight vector and
+ * setWeights() copies nothing. Otherwise the weights are gathered into
+ * packed matrices on each setWeights().
+ *
+ * The units are those AKNetworkLayout describes, computed in double, so the
+ * outputs match the network's up to rounding; maxDifference() measures it.
+ * A network holds its scratch blocks and is not thread safe, but several can
+ * share a weight vector.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKMatrixNetwork {
+    /** The rows scored at once */
+    private static final int BLOCK = 64;
+
+    /** The layout of the network's weights */
+    private final AKNetworkLayout layout;
+    /** The units of each layer, input layer first */
+    private final int[] units;
+    /** Whether each layer below the output has a bias node */
+    private final boolean[] hasBias;
+    /** Where matrix m starts in the weights */
+    private final int[] offset;
+    /** The distance between rows of matrix m, the units of layer m + 1 */
+    private final int[] rowStride;
+    /** The distance between columns of matrix m, the units of layer m */
+    private final int[] columnStride;
+    /** Where each weight goes in the packed weights, or null if the weight vector is used as it is */
+    private final int[] gather;
+    /** The packed weights, or a copy of a weight vector that isn't dense */
+    private double[] packed;
+    /** The current weights */
+    private double[] weights;
+    /** The activations of each layer for a block of rows, row major */
+    private final double[][] activations;
+    /** The input activations of the last block run, the feature matrix itself or activations[0] */
+    private double[] blockInput;
+    /** Where the last block's inputs start in blockInput */
+    private int blockInputStart;
+    /** The error derivatives of each layer's units for a block of rows, built by the first gradient() */
+    private double[][] deltas;
+    /** The gradient in the packed layout, when the weights are gathered */
+    private double[] packedGradient;
+
+    /**
+     * Make a matrix network for a network
+     * @param network the network
+     */
+    public AKMatrixNetwork(LayeredNetwork network) {
+        this(new AKNetworkLayout(network));
+    }
+
+    /**
+     * Make a matrix network for a network layout
+     * @param layout the layout
+     */
+    public AKMatrixNetwork(AKNetworkLayout layout) {
+        this.layout = layout;
+        int matrices = layout.getMatrixCount();
+        units = new int[matrices + 1];
+        for (int l = 0; l <= matrices; l++) {
+            units[l] = layout.getSize(l);
+        }
+        hasBias = new boolean[matrices];
+        int[] count = new int[matrices];
+        for (int k = 0; k < layout.getWeightCount(); k++) {
+            count[layout.getMatrix(k)]++;
+            if (layout.getColumn(k) == units[layout.getMatrix(k)]) {
+                hasBias[layout.getMatrix(k)] = true;
+            }
+        }
+
+        offset = new int[matrices];
+        rowStride = new int[matrices];
+        columnStride = new int[matrices];
+        boolean views = true;
+        for (int m = 0; m < matrices; m++) {
+            views &= count[m] == units[m + 1] * (units[m] + (hasBias[m] ? 1 : 0)) && view(m);
+        }
+        if (views) {
+            gather = null;
+        } else {
+            // row major packed matrices, one after another
+            gather = new int[layout.getWeightCount()];
+            int start = 0;
+            for (int m = 0; m < matrices; m++) {
+                offset[m] = start;
+                rowStride[m] = units[m] + 1;
+                columnStride[m] = 1;
+                start += units[m + 1] * (units[m] + 1);
+            }
+            for (int k = 0; k < gather.length; k++) {
+                int m = layout.getMatrix(k);
+                gather[k] = offset[m] + layout.getRow(k) * rowStride[m] + layout.getColumn(k);
+            }
+            packed = new double[start];
+        }
+
+        activations = new double[matrices + 1][];
+        for (int l = 0; l <= matrices; l++) {
+            activations[l] = new double[BLOCK * units[l]];
+        }
+        // units past a data set's features keep the activation they had in the network
+        double[] inputs = layout.getInputs();
+        for (int i = 0; i < BLOCK; i++) {
+            System.arraycopy(inputs, 0, activations[0], i * units[0], units[0]);
+        }
+    }
+
+    /**
+     * Find whether the weights of a matrix sit in the weight vector as a row or
+     * column major matrix, and if so where
+     * @param m the matrix
+     * @return true if offset, rowStride and columnStride now locate it
+     */
+    private boolean view(int m) {
+        int first = -1;
+        for (int k = 0; k < layout.getWeightCount() && first < 0; k++) {
+            first = layout.getMatrix(k) == m ? k : -1;
+        }
+        int columns = units[m] + (hasBias[m] ? 1 : 0);
+        int rows = units[m + 1];
+        // if the links of the matrix are contiguous, the one after the first starts the next column or row
+        int row = layout.getRow(first), column = layout.getColumn(first);
+        if (row != 0 || column != 0 || rows * columns == 1) {
+            return false;
+        }
+        int next = first + 1;
+        if (layout.getMatrix(next) != m) {
+            return false;
+        }
+        if (layout.getRow(next) == 0 && layout.getColumn(next) == 1) {
+            columnStride[m] = 1;
+            rowStride[m] = columns;
+        } else if (layout.getRow(next) == 1 && layout.getColumn(next) == 0) {
+            rowStride[m] = 1;
+            columnStride[m] = rows;
+        } else {
+            return false;
+        }
+        offset[m] = first;
+        for (int k = first; k < first + rows * columns; k++) {
+            if (k >= layout.getWeightCount() || layout.getMatrix(k) != m
+                    || k != first + layout.getRow(k) * rowStride[m] + layout.getColumn(k) * columnStride[m]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Set the weights, in the order the network's setWeights() takes them. A
+     * dense vector is used as it is when the layout allows, so later changes
+     * to it change the network.
+     * @param w the weights
+     */
+    public void setWeights(Vector w) {
+        int n = layout.getWeightCount();
+        if (w.size() != n) {
+            throw new IllegalArgumentException("expected " + n + " weights, got " + w.size());
+        }
+        if (gather == null && w instanceof DenseVector) {
+            weights = ((DenseVector) w).getData();
+            return;
+        }
+        if (packed == null) {
+            packed = new double[n];
+        }
+        for (int k = 0; k < n; k++) {
+            packed[gather == null ? k : gather[k]] = w.get(k);
+        }
+        weights = packed;
+    }
+
+    /**
+     * Set the weights from an array in the order the network's setWeights() takes them
+     * @param w the weights, used as they are when the layout allows
+     */
+    public void setWeights(double[] w) {
+        setWeights(new DenseVector(w));
+    }
+
+    /**
+     * Compute the sum of squares error against the one hot labels over every row of a data set
+     * @param examples the data set
+     * @return the error
+     */
+    public double error(AKDataSet examples) {
+        double error = 0;
+        for (int from = 0; from < examples.size(); from += BLOCK) {
+            int count = Math.min(BLOCK, examples.size() - from);
+            error += blockError(examples, null, from, count);
+        }
+        return error;
+    }
+
+    /**
+     * Compute the sum of squares error over some rows of a data set
+     * @param examples the data set
+     * @param rows the rows
+     * @return the error
+     */
+    public double error(AKDataSet examples, int[] rows) {
+        double error = 0;
+        for (int from = 0; from < rows.length; from += BLOCK) {
+            int count = Math.min(BLOCK, rows.length - from);
+            error += blockError(examples, rows, from, count);
+        }
+        return error;
+    }
+
+    /**
+     * Compute the share of rows of a data set classified correctly
+     * @param examples the data set
+     * @return the accuracy
+     */
+    public double accuracy(AKDataSet examples) {
+        int outputs = units[units.length - 1];
+        int correct = 0;
+        for (int from = 0; from < examples.size(); from += BLOCK) {
+            int count = Math.min(BLOCK, examples.size() - from);
+            double[] out = forward(examples, null, from, count);
+            for (int i = 0; i < count; i++) {
+                int best = 0;
+                for (int k = 1; k < outputs; k++) {
+                    if (out[i * outputs + k] > out[i * outputs + best]) {
+                        best = k;
+                    }
+                }
+                correct += best == examples.getLabel(from + i) ? 1 : 0;
+            }
+        }
+        return examples.size() == 0 ? 0 : (double) correct / examples.size();
+    }
+
+    /**
+     * Compare with a network's own forward pass, using the weights the network has now
+     * @param network the network this was built for
+     * @param examples the rows to compare on
+     * @return the largest difference in any output
+     */
+    public double maxDifference(BackPropagationNetwork network, AKDataSet examples) {
+        List<?> links = network.getLinks();
+        double[] w = new double[links.size()];
+        for (int k = 0; k < w.length; k++) {
+            w[k] = ((Link) links.get(k)).getWeight();
+        }
+        setWeights(w);
+        Layer output = network.getOutputLayer();
+        int outputs = units[units.length - 1];
+        double max = 0;
+        for (int from = 0; from < examples.size(); from += BLOCK) {
+            int count = Math.min(BLOCK, examples.size() - from);
+            double[] out = forward(examples, null, from, count);
+            for (int i = 0; i < count; i++) {
+                AKNetworkOptimizationProblem.setInput(network, examples, from + i);
+                network.run();
+                for (int k = 0; k < outputs; k++) {
+                    max = Math.max(max, Math.abs(output.getNode(k).getActivation() - out[i * outputs + k]));
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Add the gradient of the sum of squares error over rows [from, to) of a
+     * data set to an array. The output deltas are the outputs less the one hot
+     * targets, the sum of squares gradient passed straight through the
+     * softmax as ABAGAIL's softmax output layer does, and back through the
+     * logistic derivative for a single output.
+     * @param examples the data set
+     * @param from the first row
+     * @param to one past the last row
+     * @param gradient the array added to, in the order of the weight vector
+     * @return the error over the rows
+     */
+    public double gradient(AKDataSet examples, int from, int to, double[] gradient) {
+        int matrices = units.length - 1;
+        if (deltas == null) {
+            deltas = new double[matrices + 1][];
+            for (int l = 1; l <= matrices; l++) {
+                deltas[l] = new double[BLOCK * units[l]];
+            }
+            if (gather != null) {
+                packedGradient = new double[packed.length];
+            }
+        }
+        double[] g = gradient;
+        if (gather != null) {
+            g = packedGradient;
+            Arrays.fill(g, 0);
+        }
+        int outputs = units[matrices];
+        double error = 0;
+        for (int start = from; start < to; start += BLOCK) {
+            int count = Math.min(BLOCK, to - start);
+            double[] out = forward(examples, null, start, count);
+            double[] delta = deltas[matrices];
+            for (int i = 0; i < count; i++) {
+                int label = examples.getLabel(start + i);
+                for (int k = 0; k < outputs; k++) {
+                    int o = i * outputs + k;
+                    double diff = out[o] - (k == label ? 1 : 0);
+                    error += .5 * diff * diff;
+                    delta[o] = layout.isSoftMax() ? diff : diff * out[o] * (1 - out[o]);
+                }
+            }
+            for (int m = matrices - 1; m >= 0; m--) {
+                backward(m, m == 0 ? blockInput : activations[m], m == 0 ? blockInputStart : 0, count, g);
+            }
+        }
+        if (gather != null) {
+            for (int k = 0; k < gather.length; k++) {
+                gradient[k] += packedGradient[gather[k]];
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Add a block's gradient of matrix m to g and, above the input layer, pass
+     * the deltas of layer m + 1 back to layer m
+     */
+    private void backward(int m, double[] in, int inStart, int count, double[] g) {
+        int n = units[m + 1], c = units[m];
+        int off = offset[m], rs = rowStride[m], cs = columnStride[m];
+        double[] w = weights, delta = deltas[m + 1];
+        if (hasBias[m]) {
+            double b = layout.getBias(m);
+            for (int r = 0; r < n; r++) {
+                double sum = 0;
+                for (int i = 0; i < count; i++) {
+                    sum += delta[i * n + r];
+                }
+                g[off + r * rs + c * cs] += b * sum;
+            }
+        }
+        double[] previous = m == 0 ? null : deltas[m];
+        if (cs == 1) {
+            for (int i = 0; i < count; i++) {
+                int a = inStart + i * c;
+                for (int r = 0; r < n; r++) {
+                    double d = delta[i * n + r];
+                    int wr = off + r * rs;
+                    for (int j = 0; j < c; j++) {
+                        g[wr + j] += d * in[a + j];
+                    }
+                }
+            }
+            if (previous != null) {
+                Arrays.fill(previous, 0, count * c, 0);
+                for (int i = 0; i < count; i++) {
+                    int p = i * c;
+                    for (int r = 0; r < n; r++) {
+                        double d = delta[i * n + r];
+                        int wr = off + r * rs;
+                        for (int j = 0; j < c; j++) {
+                            previous[p + j] += d * w[wr + j];
+                        }
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                int a = inStart + i * c, o = i * n;
+                for (int j = 0; j < c; j++) {
+                    double x = in[a + j];
+                    int wc = off + j * cs;
+                    for (int r = 0; r < n; r++) {
+                        g[wc + r] += x * delta[o + r];
+                    }
+                }
+            }
+            if (previous != null) {
+                for (int i = 0; i < count; i++) {
+                    int o = i * n;
+                    for (int j = 0; j < c; j++) {
+                        int wc = off + j * cs;
+                        double s = 0;
+                        for (int r = 0; r < n; r++) {
+                            s += w[wc + r] * delta[o + r];
+                        }
+                        previous[i * c + j] = s;
+                    }
+                }
+            }
+        }
+        if (previous != null) {
+            // through the tanh derivative, 1 - a^2
+            for (int j = 0; j < count * c; j++) {
+                previous[j] *= 1 - in[j] * in[j];
+            }
+        }
+    }
+
+    /**
+     * Get whether setWeights() uses a dense weight vector without copying it
+     * @return true if every matrix is a view into the weight vector
+     */
+    public boolean isView() {
+        return gather == null;
+    }
+
+    private double blockError(AKDataSet examples, int[] rows, int from, int count) {
+        double[] out = forward(examples, rows, from, count);
+        int outputs = units[units.length - 1];
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            int label = examples.getLabel(rows == null ? from + i : rows[from + i]);
+            for (int k = 0; k < outputs; k++) {
+                double diff = out[i * outputs + k] - (k == label ? 1 : 0);
+                sum += diff * diff;
+            }
+        }
+        return .5 * sum;
+    }
+
+    /**
+     * Run a block of rows through the network
+     * @param rows the rows, or null for the rows from on
+     * @return the output activations, a row of outputs per row of the block
+     */
+    private double[] forward(AKDataSet examples, int[] rows, int from, int count) {
+        if (rows == null && units[0] == examples.getFeatureCount()) {
+            // the rows of a view are contiguous, so the feature matrix is the input block
+            blockInput = examples.getFeatures();
+            blockInputStart = examples.rowStart(from);
+        } else {
+            blockInput = activations[0];
+            blockInputStart = 0;
+            double[] features = examples.getFeatures();
+            for (int i = 0; i < count; i++) {
+                int start = examples.rowStart(rows == null ? from + i : rows[from + i]);
+                System.arraycopy(features, start, blockInput, i * units[0], examples.getFeatureCount());
+            }
+        }
+        int last = units.length - 2;
+        for (int m = 0; m <= last; m++) {
+            double[] out = activations[m + 1];
+            multiply(m, m == 0 ? blockInput : activations[m], m == 0 ? blockInputStart : 0, out, count);
+            int n = count * units[m + 1];
+            if (m < last) {
+                // tanh from a single exp, a few times cheaper than Math.tanh
+                for (int j = 0; j < n; j++) {
+                    out[j] = 1 - 2 / (Math.exp(2 * out[j]) + 1);
+                }
+            } else if (layout.isSoftMax()) {
+                softMax(out, count, units[m + 1]);
+            } else {
+                for (int j = 0; j < n; j++) {
+                    out[j] = 1 / (1 + Math.exp(-out[j]));
+                }
+            }
+        }
+        return activations[last + 1];
+    }
+
+    /**
+     * Multiply a block of activations of layer m by the transpose of matrix m, plus the bias
+     */
+    private void multiply(int m, double[] in, int inStart, double[] out, int count) {
+        int n = units[m + 1], c = units[m];
+        int off = offset[m], rs = rowStride[m], cs = columnStride[m];
+        double[] w = weights;
+        for (int r = 0; r < n; r++) {
+            double b = hasBias[m] ? layout.getBias(m) * w[off + r * rs + c * cs] : 0;
+            for (int i = 0; i < count; i++) {
+                out[i * n + r] = b;
+            }
+        }
+        if (cs == 1) {
+            // a weight row is contiguous: dot it with every row of the block while it is in cache
+            for (int r = 0; r < n; r++) {
+                int wr = off + r * rs;
+                for (int i = 0; i < count; i++) {
+                    int a = inStart + i * c;
+                    double s = 0;
+                    for (int j = 0; j < c; j++) {
+                        s += in[a + j] * w[wr + j];
+                    }
+                    out[i * n + r] += s;
+                }
+            }
+        } else {
+            // a weight column is contiguous: add it, scaled, to each output row
+            for (int i = 0; i < count; i++) {
+                int a = inStart + i * c, o = i * n;
+                for (int j = 0; j < c; j++) {
+                    double x = in[a + j];
+                    int wc = off + j * cs;
+                    for (int r = 0; r < n; r++) {
+                        out[o + r] += x * w[wc + r];
+                    }
+                }
+            }
+        }
+    }
+
+    private static void softMax(double[] out, int count, int n) {
+        for (int i = 0; i < count; i++) {
+            int o = i * n;
+            double max = out[o];
+            for (int k = 1; k < n; k++) {
+                max = Math.max(max, out[o + k]);
+            }
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                out[o + k] = Math.exp(out[o + k] - max);
+                sum += out[o + k];
+            }
+            for (int k = 0; k < n; k++) {
+                out[o + k] /= sum;
+            }
+        }
+    }
+}
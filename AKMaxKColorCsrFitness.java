@@ -0,0 +1,147 @@
+package opt.test;
+
+import shared.Instance;
+import util.linalg.Vector;
+
+/**
+ * Max-K-coloring fitness over an AKCsrGraph: the number of adjacency entries
+ * whose two ends have different colors, the count MaxKColorFitnessFunction
+ * makes over its vertex lists. Recoloring one vertex or swapping the colors
+ * of two vertices is scored in O(degree) from the current value, and the
+ * conflict count of the last scored candidate is kept so foundConflict() is
+ * O(1).
+ *
+ * The running conflict count makes this function stateful; give each thread
+ * its own.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKMaxKColorCsrFitness implements AKDeltaEvaluationFunction {
+    /** The graph */
+    private final AKCsrGraph graph;
+    /** The conflicting adjacency entries of the last candidate scored or changed */
+    private long conflicts;
+
+    /**
+     * Make a new fitness function
+     * @param graph the graph to color
+     */
+    public AKMaxKColorCsrFitness(AKCsrGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Score a coloring in full, O(vertices + edges)
+     * @see opt.EvaluationFunction#value(shared.Instance)
+     */
+    public double value(Instance d) {
+        Vector data = d.getData();
+        int[] offsets = graph.getOffsets(), neighbors = graph.getNeighbors();
+        long count = 0;
+        for (int v = 0; v < graph.size(); v++) {
+            double color = data.get(v);
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                if (data.get(neighbors[e]) == color) {
+                    count++;
+                }
+            }
+        }
+        conflicts = count;
+        return graph.entries() - count;
+    }
+
+    /**
+     * @see opt.test.AKDeltaEvaluationFunction#supports(opt.test.AKMove)
+     */
+    public boolean supports(AKMove move) {
+        return move instanceof AKChangeOneMove || move instanceof AKSwapMove;
+    }
+
+    /**
+     * @see opt.test.AKDeltaEvaluationFunction#valueAfter(shared.Instance, double, opt.test.AKMove)
+     */
+    public double valueAfter(Instance d, double value, AKMove move) {
+        return value - conflictChange(d.getData(), move);
+    }
+
+    /**
+     * Recolor a vertex, keeping the conflict count current
+     * @param d the coloring, whose conflicts were counted by value()
+     * @param v the vertex
+     * @param color the new color
+     */
+    public void recolor(Instance d, int v, int color) {
+        apply(d, new AKChangeOneMove(v, color));
+    }
+
+    /**
+     * Swap the colors of two vertices, keeping the conflict count current
+     * @param d the coloring, whose conflicts were counted by value()
+     * @param u the first vertex
+     * @param v the second vertex
+     */
+    public void swap(Instance d, int u, int v) {
+        apply(d, new AKSwapMove(u, v));
+    }
+
+    /**
+     * Make a move, keeping the conflict count current, in O(degree)
+     * @see opt.test.AKDeltaEvaluationFunction#apply(shared.Instance, opt.test.AKMove)
+     */
+    public void apply(Instance d, AKMove move) {
+        conflicts += conflictChange(d.getData(), move);
+        move.apply(d);
+    }
+
+    /**
+     * The change in conflicting adjacency entries a move would make
+     */
+    private long conflictChange(Vector data, AKMove move) {
+        if (move instanceof AKChangeOneMove) {
+            AKChangeOneMove change = (AKChangeOneMove) move;
+            int v = change.getI();
+            return 2 * (matches(data, v, change.getValue(), -1) - matches(data, v, data.get(v), -1));
+        }
+        AKSwapMove swap = (AKSwapMove) move;
+        int u = swap.getI(), v = swap.getJ();
+        double a = data.get(u), b = data.get(v);
+        if (u == v || a == b) {
+            return 0;
+        }
+        // the u-v edge, if any, conflicts neither before nor after
+        return 2 * (matches(data, u, b, v) - matches(data, u, a, v)
+                + matches(data, v, a, u) - matches(data, v, b, u));
+    }
+
+    /**
+     * Count the neighbors of v, other than skip, with the given color
+     */
+    private long matches(Vector data, int v, double color, int skip) {
+        int[] offsets = graph.getOffsets(), neighbors = graph.getNeighbors();
+        long count = 0;
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            int u = neighbors[e];
+            if (u != skip && data.get(u) == color) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the conflicting adjacency entries of the last candidate scored or changed
+     * @return the count, twice the number of conflicting edges
+     */
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * Whether the last candidate scored or changed has a conflict, in O(1)
+     * @return true if two adjacent vertices share a color
+     */
+    public boolean foundConflict() {
+        return conflicts > 0;
+    }
+}
@@ -1,12 +1,12 @@
 package opt.test;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Random;
 
 import opt.ga.MaxKColorFitnessFunction;
 import opt.ga.Vertex;
 
-import dist.DiscreteDependencyTree;
 import dist.DiscretePermutationDistribution;
 import dist.DiscreteUniformDistribution;
 import dist.Distribution;
@@ -25,12 +25,9 @@ import opt.ga.SwapMutation;
 import opt.ga.GenericGeneticAlgorithmProblem;
 import opt.ga.GeneticAlgorithmProblem;
 import opt.ga.MutationFunction;
-import opt.ga.StandardGeneticAlgorithm;
 import opt.ga.UniformCrossOver;
 import opt.prob.GenericProbabilisticOptimizationProblem;
-import opt.prob.MIMIC;
 import opt.prob.ProbabilisticOptimizationProblem;
-import shared.FixedIterationTrainer;
 
 /**
  *
@@ -42,14 +39,35 @@ public class AKMaxKColoringTest {
     private static final int N = 50; // number of vertices
     private static final int L =4; // L adjacent nodes per vertex
     private static final int K = 8; // K possible colors
+    /** The iterations without improvement before RHC and SA stop early, scored every CHECK_INTERVAL */
+    private static final int STALL_ITERATIONS = 20000, CHECK_INTERVAL = 100;
+    /** The generations without improvement before GA and MIMIC stop early */
+    private static final int STALL_GENERATIONS = 100;
+    /** The number of GA islands and of threads used to score MIMIC samples */
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    /** The coldest and hottest parallel tempering temperatures */
+    private static final double T_MIN = 0.1, T_MAX = 10;
+    /** The steps each parallel tempering chain takes between swaps */
+    private static final int SWEEP = 100;
+    /** The parallel tempering milestones, in sweeps */
+    private static final double[] SWEEPS = { 1, 10, 100, 1000, 2000 };
+    /** The GA generations between migrations between islands */
+    private static final int MIGRATION_INTERVAL = 10;
+    /** The individuals each GA island sends its neighbor per migration */
+    private static final int MIGRANTS = 2;
     /**
      * The test main
-     * @param args ignored
+     * @param args ignored, or the path of an edge list file to color instead of the random graph
+     * @throws IOException if the edge list can't be read
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            largeGraph(args[0]);
+            return;
+        }
         Random random = new Random(N*L);
         // create the random velocity
-        Vertex[] vertices = new Vertex[N];
+        final Vertex[] vertices = new Vertex[N];
         for (int i = 0; i < N; i++) {
             Vertex vertex = new Vertex();
             vertices[i] = vertex;
@@ -63,7 +81,7 @@ public class AKMaxKColoringTest {
             System.out.println(Arrays.toString(vertex.getAadjacencyColorMatrix().toArray()));
         }*/
         // for rhc, sa, and ga we use a permutation based encoding
-        MaxKColorFitnessFunction ef = new MaxKColorFitnessFunction(vertices);
+        final MaxKColorFitnessFunction ef = new MaxKColorFitnessFunction(vertices);
         Distribution odd = new DiscretePermutationDistribution(K);
         NeighborFunction nf = new SwapNeighbor();
         MutationFunction mf = new SwapMutation();
@@ -71,9 +89,16 @@ public class AKMaxKColoringTest {
         HillClimbingProblem hcp = new GenericHillClimbingProblem(ef, odd, nf);
         GeneticAlgorithmProblem gap = new GenericGeneticAlgorithmProblem(ef, odd, mf, cf);
 
-        Distribution df = new DiscreteDependencyTree(.1);
+        Distribution df = new AKParallelDependencyTree(.1, THREADS);
         ProbabilisticOptimizationProblem pop = new GenericProbabilisticOptimizationProblem(ef, odd, df);
 
+        // the fitness function records conflicts as it scores, so every scoring thread gets its own
+        AKPopulationEvaluator.Factory efs = new AKPopulationEvaluator.Factory() {
+            public EvaluationFunction create() {
+                return new MaxKColorFitnessFunction(vertices);
+            }
+        };
+
         double[][][] paramGrid = new double[][][] {
             {
                 { 10, 500, 2500, 125000, 1E11 }, // initial temp
@@ -91,79 +116,159 @@ public class AKMaxKColoringTest {
             }
         };
 
-        FixedIterationTrainer fit;
+        // each optimizer runs once up to its largest iteration count and is scored at every milestone
 
         // RHC
-        for (double iter : paramGrid[3][0]) {
-            // long starttime = System.currentTimeMillis();
-            RandomizedHillClimbing rhc = new RandomizedHillClimbing(hcp);
-            fit = new FixedIterationTrainer(rhc, (int) iter);
-            fit.train();
-            System.out.println(iter + "iter, RHC: " + ef.value(rhc.getOptimal()));
-            System.out.println(ef.foundConflict());
-            // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
-        }
+        // long starttime = System.currentTimeMillis();
+        final RandomizedHillClimbing rhc = new RandomizedHillClimbing(hcp);
+        final AKConvergenceTrainer rhcRun = AKConvergenceTrainer.onPlateau(rhc, ef, STALL_ITERATIONS, CHECK_INTERVAL);
+        new AKMilestoneTrainer(rhcRun, paramGrid[3][0], new AKMilestoneTrainer.Listener() {
+            public void milestone(int iter) {
+                System.out.println((double) iter + "iter, RHC: " + ef.value(rhc.getOptimal()));
+                System.out.println(ef.foundConflict());
+            }
+        }).train();
+        System.out.println("RHC " + rhcRun);
+        // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
 
         System.out.println("============================");
-        double t0 = 500, coolingRate = 0.25;
-
-        for (double iter : paramGrid[3][0]) {
+        final double t0 = 500, coolingRate = 0.25;
 
         // // SA grid search
-        // for (t0 : paramGrid[0][0]) {
-        //     for (coolingRate : paramGrid[0][1]) {
+        // for (double t0 : paramGrid[0][0]) {
+        //     for (double coolingRate : paramGrid[0][1]) {
                 // starttime = System.currentTimeMillis();
-                SimulatedAnnealing sa = new SimulatedAnnealing(t0, coolingRate, hcp);
-                fit = new FixedIterationTrainer(sa, (int) iter);
-                fit.train();
-                System.out.println( "\n" +
-                        iter + "iter, SA || t0: " + t0 + ", coolingRate: " + coolingRate + "\n\t" + ef.value(sa.getOptimal()));
-                System.out.println(ef.foundConflict());
+                final SimulatedAnnealing sa = new SimulatedAnnealing(t0, coolingRate, hcp);
+                final AKConvergenceTrainer saRun = AKConvergenceTrainer.onPlateau(sa, ef, STALL_ITERATIONS, CHECK_INTERVAL);
+                new AKMilestoneTrainer(saRun, paramGrid[3][0], new AKMilestoneTrainer.Listener() {
+                    public void milestone(int iter) {
+                        System.out.println( "\n" + (double) iter + "iter, SA || t0: " + t0 + ", coolingRate: " + coolingRate
+                                + "\n\t" + ef.value(sa.getOptimal()));
+                        System.out.println(ef.foundConflict());
+                    }
+                }).train();
+                System.out.println("SA " + saRun);
                 // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
         //     }
         // }
-        }
 
         System.out.println("============================");
-        double popSize = 1000, toMate = 0.05, toMutate = 0.03;
-
-        for (double iter : paramGrid[3][1]) {
-            // GA grid search
-            // for (popSize : paramGrid[1][0]) {
-            //     for (toMate : paramGrid[1][1]) {
-            //         for (toMutate : paramGrid[1][2]) {
-                        // starttime = System.currentTimeMillis();
-                        StandardGeneticAlgorithm ga = new StandardGeneticAlgorithm((int) popSize, (int) (popSize * toMate),
-                                (int) (popSize * toMutate), gap);
-                        fit = new FixedIterationTrainer(ga, (int) iter);
-                        fit.train();
-                        System.out.println("\n" + iter + "iter, GA || popSize: " + popSize + ", toMate: " + toMate + ", toMutate: "
-                                + toMutate + "\n\t" + ef.value(ga.getOptimal()));
-                        System.out.println(ef.foundConflict());
-                        // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
-            //         }
-            //     }
-            // }
-        }
+        // parallel tempering: one chain per core on a temperature ladder in place of the SA grid search
+        final AKReplicaExchangeAnnealing pt = new AKReplicaExchangeAnnealing(T_MIN, T_MAX, THREADS, SWEEP, hcp, efs, null);
+        new AKMilestoneTrainer(pt, SWEEPS, new AKMilestoneTrainer.Listener() {
+            public void milestone(int iter) {
+                System.out.println("\n" + (double) iter * SWEEP + "iter, PT || tMin: " + T_MIN + ", tMax: " + T_MAX
+                        + ", replicas: " + THREADS + ", swap rate: " + pt.getSwapRate() + "\n\t" + ef.value(pt.getOptimal()));
+                System.out.println(ef.foundConflict());
+            }
+        }).train();
+        pt.shutdown();
 
         System.out.println("============================");
-        double samples = 200, toKeep = 50;
-        for (double iter : paramGrid[3][1]) {
-            // MIMIC grid search
-            // for (double samples : paramGrid[2][0]) {
-            //     for (double toKeep : paramGrid[2][1]) {
+        final double popSize = 1000, toMate = 0.05, toMutate = 0.03;
+
+        // GA grid search
+        // for (double popSize : paramGrid[1][0]) {
+        //     for (double toMate : paramGrid[1][1]) {
+        //         for (double toMutate : paramGrid[1][2]) {
                     // starttime = System.currentTimeMillis();
-                    MIMIC mimic = new MIMIC((int) samples, (int) toKeep, pop);
-                    fit = new FixedIterationTrainer(mimic, (int) iter);
-                    fit.train();
-                    System.out.println("\n" + iter + "iter, MIMIC || samples: " + samples + ", toKeep: " + toKeep + "\n\t"
-                            + ef.value(mimic.getOptimal()));
-                    System.out.println(ef.foundConflict());
+                    // the population, mates and mutants are spread over up to one island per core, swapping their best every few generations
+                    final AKIslandGeneticAlgorithm ga = new AKIslandGeneticAlgorithm(THREADS, (int) popSize,
+                            (int) (popSize * toMate), (int) (popSize * toMutate), gap, efs,
+                            AKIslandGeneticAlgorithm.Topology.RING, MIGRATION_INTERVAL, MIGRANTS);
+                    final AKConvergenceTrainer gaRun = AKConvergenceTrainer.onPlateau(ga, ef, STALL_GENERATIONS, 1);
+                    new AKMilestoneTrainer(gaRun, paramGrid[3][1], new AKMilestoneTrainer.Listener() {
+                        public void milestone(int iter) {
+                            System.out.println("\n" + (double) iter + "iter, GA || popSize: " + popSize + ", toMate: " + toMate
+                                    + ", toMutate: " + toMutate + "\n\t" + ef.value(ga.getOptimal()));
+                            System.out.println(ef.foundConflict());
+                        }
+                    }).train();
+                    System.out.println("GA " + gaRun);
                     // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
-            //     }
-            // }
-        }
+        //         }
+        //     }
+        // }
 
+        System.out.println("============================");
+        final double samples = 200, toKeep = 50;
+        // MIMIC grid search
+        // for (double samples : paramGrid[2][0]) {
+        //     for (double toKeep : paramGrid[2][1]) {
+                // starttime = System.currentTimeMillis();
+                final AKParallelMIMIC mimic = new AKParallelMIMIC((int) samples, (int) toKeep, pop,
+                        new AKPopulationEvaluator(efs, THREADS));
+                final AKConvergenceTrainer mimicRun = AKConvergenceTrainer.onPlateau(mimic, ef, STALL_GENERATIONS, 1);
+                new AKMilestoneTrainer(mimicRun, paramGrid[3][1], new AKMilestoneTrainer.Listener() {
+                    public void milestone(int iter) {
+                        System.out.println("\n" + (double) iter + "iter, MIMIC || samples: " + samples + ", toKeep: " + toKeep
+                                + "\n\t" + ef.value(mimic.getOptimal()));
+                        System.out.println(ef.foundConflict());
+                    }
+                }).train();
+                System.out.println("MIMIC " + mimicRun);
+                // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
+        //     }
+        // }
 
+
+    }
+
+    /**
+     * Color a graph loaded from an edge list with RHC and SA. Moves recolor one
+     * vertex and are scored in O(degree) against a CSR adjacency, so graphs with
+     * hundreds of thousands of vertices are practical; GA and MIMIC score whole
+     * colorings and are left to the small graph.
+     * @param path the edge list file
+     * @throws IOException if the file can't be read
+     */
+    private static void largeGraph(String path) throws IOException {
+        final AKCsrGraph graph = AKCsrGraph.load(path);
+        System.out.println(path + ": " + graph.size() + " vertices, " + graph.entries() / 2 + " edges");
+        int[] ranges = new int[graph.size()];
+        Arrays.fill(ranges, K);
+        final AKMaxKColorCsrFitness ef = new AKMaxKColorCsrFitness(graph);
+        Distribution odd = new DiscreteUniformDistribution(ranges);
+        NeighborFunction nf = new DiscreteChangeOneNeighbor(ranges);
+        HillClimbingProblem hcp = new GenericHillClimbingProblem(ef, odd, nf);
+        AKMoveGenerator moves = new AKChangeOneMoveGenerator(ranges);
+        double[] iterations = { 1000, 10000, 100000, 1000000, 10000000 };
+
+        final AKDeltaSearch rhc = new AKDeltaSearch(hcp, ef, moves);
+        new AKMilestoneTrainer(rhc, iterations, new AKMilestoneTrainer.Listener() {
+            public void milestone(int iter) {
+                System.out.println((double) iter + "iter, RHC: " + rhc.getValue()
+                        + ", conflicting edges: " + ef.getConflicts() / 2);
+            }
+        }).train();
+
+        System.out.println("============================");
+        // a climber per core, each restarting when it stalls, until one finds a proper coloring
+        final AKRestartHillClimbing portfolio = new AKRestartHillClimbing(THREADS, 100000, 1000000, hcp,
+                new AKPopulationEvaluator.Factory() {
+                    public EvaluationFunction create() {
+                        return new AKMaxKColorCsrFitness(graph);
+                    }
+                }, moves);
+        portfolio.setTarget(graph.entries());
+        new AKMilestoneTrainer(portfolio, new double[] { 1, 10, 100 }, new AKMilestoneTrainer.Listener() {
+            public void milestone(int iter) {
+                double value = ef.value(portfolio.getOptimal());
+                System.out.println((double) iter * 100000 + "iter per climber, restarting RHC || climbers: " + THREADS
+                        + ", restarts: " + portfolio.getRestarts() + "\n\t" + value + ", conflicting edges: "
+                        + ef.getConflicts() / 2);
+            }
+        }).train();
+        portfolio.shutdown();
+
+        System.out.println("============================");
+        final double t0 = 500, coolingRate = 0.999999;
+        final AKDeltaSearch sa = new AKDeltaSearch(t0, coolingRate, hcp, ef, moves);
+        new AKMilestoneTrainer(sa, iterations, new AKMilestoneTrainer.Listener() {
+            public void milestone(int iter) {
+                System.out.println("\n" + (double) iter + "iter, SA || t0: " + t0 + ", coolingRate: " + coolingRate
+                        + "\n\t" + sa.getValue() + ", conflicting edges: " + ef.getConflicts() / 2);
+            }
+        }).train();
     }
 }
@@ -0,0 +1,24 @@
+package opt.test;
+
+import java.io.IOException;
+
+/**
+ * Somewhere the samples recorded by AKRunMetrics are written to.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public interface AKMetricsSink {
+    /**
+     * Write a sample
+     * @param sample the sample
+     * @throws IOException if it can't be written
+     */
+    void record(AKRunMetrics.Sample sample) throws IOException;
+
+    /**
+     * Write out anything buffered and release the sink
+     * @throws IOException if it can't be written
+     */
+    void close() throws IOException;
+}
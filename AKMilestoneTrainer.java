@@ -0,0 +1,93 @@
+package opt.test;
+
+import java.util.Arrays;
+
+import shared.Trainer;
+
+/**
+ * A trainer that runs once up to the largest of a list of iteration milestones
+ * and reports to a listener each time a milestone is reached. Taking a snapshot
+ * of a single run at 1, 5, 10, ... iterations gives the same per milestone
+ * results as retraining from scratch for each one, at the cost of the largest
+ * milestone alone instead of the sum of all of them. An AKSteppedTrainer, such
+ * as an AKConvergenceTrainer, is stepped one iteration at a time and stops
+ * training where it stops itself.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKMilestoneTrainer implements Trainer {
+    /** The trainer being run */
+    private final Trainer trainer;
+    /** The milestones, in ascending order */
+    private final int[] milestones;
+    /** The listener told about each milestone */
+    private final Listener listener;
+
+    /**
+     * Make a new milestone trainer
+     * @param trainer the trainer to run
+     * @param milestones the iteration counts to report at
+     * @param listener the listener
+     */
+    public AKMilestoneTrainer(Trainer trainer, int[] milestones, Listener listener) {
+        this.trainer = trainer;
+        this.milestones = milestones.clone();
+        Arrays.sort(this.milestones);
+        this.listener = listener;
+    }
+
+    /**
+     * Make a new milestone trainer from an iteration schedule stored as doubles
+     * @param trainer the trainer to run
+     * @param milestones the iteration counts to report at
+     * @param listener the listener
+     */
+    public AKMilestoneTrainer(Trainer trainer, double[] milestones, Listener listener) {
+        this(trainer, toInts(milestones), listener);
+    }
+
+    /**
+     * @see shared.Trainer#train()
+     */
+    public double train() {
+        double value = 0;
+        int done = 0;
+        for (int milestone : milestones) {
+            if (trainer instanceof AKSteppedTrainer) {
+                // a stopped run stays put, so later milestones see its final optimum
+                AKSteppedTrainer stepped = (AKSteppedTrainer) trainer;
+                boolean going = true;
+                while (going && stepped.getIterations() < milestone) {
+                    going = stepped.iterate();
+                }
+                value = stepped.getBest();
+            } else {
+                for (; done < milestone; done++) {
+                    value = trainer.train();
+                }
+            }
+            listener.milestone(milestone);
+        }
+        return value;
+    }
+
+    private static int[] toInts(double[] values) {
+        int[] ints = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ints[i] = (int) values[i];
+        }
+        return ints;
+    }
+
+    /**
+     * Told each time the run reaches a milestone
+     */
+    public interface Listener {
+        /**
+         * Called after the given number of iterations have been run
+         * @param iterations the milestone reached
+         */
+        void milestone(int iterations);
+    }
+}
@@ -0,0 +1,107 @@
+package opt.test;
+
+import dist.Distribution;
+import opt.OptimizationAlgorithm;
+import shared.Instance;
+
+/**
+ * Randomized hill climbing or simulated annealing over an
+ * AKNetworkOptimizationProblem in mini-batch mode. Each step scores the
+ * current point and its neighbor on the same batch, so the comparison is
+ * fair, then moves to the next batch. With verification on, a move the
+ * batch accepts is checked again against the full data set before it is
+ * taken, which keeps the climb honest at the cost of one full pass per
+ * accepted move.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKMiniBatchSearch extends OptimizationAlgorithm {
+    /** The temperature, or 0 for hill climbing */
+    private double t;
+    /** The cooling factor */
+    private final double cooling;
+    /** Whether accepted moves are checked against the full set */
+    private boolean verify;
+    /** The current point */
+    private Instance cur;
+    /** The full set value of the current point, if verifying */
+    private double curFull;
+
+    /**
+     * Make a new mini-batch hill climber
+     * @param nnop the problem, already in mini-batch mode
+     */
+    public AKMiniBatchSearch(AKNetworkOptimizationProblem nnop) {
+        this(0, 0, nnop);
+    }
+
+    /**
+     * Make a new mini-batch annealer
+     * @param t the starting temperature
+     * @param cooling the cooling factor
+     * @param nnop the problem, already in mini-batch mode
+     */
+    public AKMiniBatchSearch(double t, double cooling, AKNetworkOptimizationProblem nnop) {
+        super(nnop);
+        this.t = t;
+        this.cooling = cooling;
+        this.cur = nnop.random();
+    }
+
+    /**
+     * Check accepted moves against the full data set
+     * @param verify true to check
+     */
+    public void setVerify(boolean verify) {
+        AKNetworkOptimizationProblem nnop = (AKNetworkOptimizationProblem) getOptimizationProblem();
+        this.verify = verify;
+        if (verify) {
+            curFull = nnop.fullValue(cur);
+        }
+    }
+
+    /**
+     * Take one step
+     * @return the value of the current point, on the full set if verifying
+     * @see shared.Trainer#train()
+     */
+    public double train() {
+        AKNetworkOptimizationProblem nnop = (AKNetworkOptimizationProblem) getOptimizationProblem();
+        Instance neigh = nnop.neighbor(cur);
+        double curVal = nnop.value(cur);
+        double neighVal = nnop.value(neigh);
+        if (accept(curVal, neighVal)) {
+            if (!verify) {
+                cur = neigh;
+                curVal = neighVal;
+            } else {
+                double neighFull = nnop.fullValue(neigh);
+                if (accept(curFull, neighFull)) {
+                    cur = neigh;
+                    curFull = neighFull;
+                }
+            }
+        }
+        t *= cooling;
+        nnop.nextBatch();
+        return verify ? curFull : curVal;
+    }
+
+    /**
+     * The hill climbing test, or the Metropolis test when annealing
+     */
+    private boolean accept(double curVal, double neighVal) {
+        if (neighVal > curVal) {
+            return true;
+        }
+        return t > 0 && Distribution.random.nextDouble() < Math.exp((neighVal - curVal) / t);
+    }
+
+    /**
+     * @see opt.OptimizationAlgorithm#getOptimal()
+     */
+    public Instance getOptimal() {
+        return cur;
+    }
+}
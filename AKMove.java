@@ -0,0 +1,18 @@
+package opt.test;
+
+import shared.Instance;
+
+/**
+ * A described change to a candidate, such as swapping two positions. A move
+ * can be scored by an AKDeltaEvaluationFunction before it is made.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public interface AKMove {
+    /**
+     * Make the move, changing the candidate in place
+     * @param d the candidate
+     */
+    void apply(Instance d);
+}
@@ -0,0 +1,18 @@
+package opt.test;
+
+import shared.Instance;
+
+/**
+ * Proposes random moves, the move based counterpart of a NeighborFunction
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public interface AKMoveGenerator {
+    /**
+     * Propose a random move from a candidate
+     * @param d the candidate, which is not changed
+     * @return the move
+     */
+    AKMove propose(Instance d);
+}
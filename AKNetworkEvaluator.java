@@ -0,0 +1,213 @@
+package opt.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import func.nn.Layer;
+import func.nn.Link;
+import func.nn.backprop.BackPropagationNetwork;
+import func.nn.backprop.BackPropagationNetworkFactory;
+import shared.Instance;
+
+/**
+ * Scores a classification network over a slice of an AKDataSet: accuracy, a
+ * confusion matrix and the sum of squares loss, in one pass that allocates
+ * nothing per row. Large slices are split across threads, each running its own
+ * copy of the network with the same weights.
+ *
+ * An evaluator is not thread safe; give each concurrent caller its own.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKNetworkEvaluator {
+    /** The smallest slice worth giving to its own thread */
+    private static final int MIN_CHUNK = 2048;
+
+    /** The layer sizes of the networks being scored */
+    private final int[] layers;
+    /** The pool slices are split across */
+    private final AKWorkerPool pool;
+    /** One network per thread, built on first use */
+    private final BackPropagationNetwork[] networks;
+
+    /**
+     * Make a new evaluator
+     * @param layers the layer sizes of the classification networks being scored
+     * @param threads the number of threads to split large slices across
+     */
+    public AKNetworkEvaluator(int[] layers, int threads) {
+        this.layers = layers.clone();
+        this.pool = new AKWorkerPool(threads);
+        this.networks = new BackPropagationNetwork[threads];
+    }
+
+    /**
+     * Score a weight vector, such as an optimizer's optimal instance
+     * @param weights the network weights
+     * @param examples the slice to score
+     * @return the result
+     */
+    public Result evaluate(final Instance weights, final AKDataSet examples) {
+        final int chunks = Math.max(1, Math.min(networks.length, examples.size() / MIN_CHUNK));
+        List<Callable<Result>> tasks = new ArrayList<Callable<Result>>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int index = c;
+            final int from = (int) ((long) examples.size() * c / chunks);
+            final int to = (int) ((long) examples.size() * (c + 1) / chunks);
+            tasks.add(new Callable<Result>() {
+                public Result call() {
+                    BackPropagationNetwork network = network(index);
+                    network.setWeights(weights.getData());
+                    return score(network, examples, from, to);
+                }
+            });
+        }
+        Result total = new Result(examples.getClassCount());
+        for (Result r : pool.invokeAll(tasks)) {
+            total.add(r);
+        }
+        return total;
+    }
+
+    /**
+     * Score a network with the weights it has now, on the calling thread
+     * @param network the network
+     * @param examples the slice to score
+     * @return the result
+     */
+    public static Result evaluate(BackPropagationNetwork network, AKDataSet examples) {
+        return score(network, examples, 0, examples.size());
+    }
+
+    /**
+     * Get a network's current weights as an instance, to score on an evaluator
+     * @param network the network
+     * @return the weights, in the order setWeights() takes them
+     */
+    public static Instance weights(BackPropagationNetwork network) {
+        List<?> links = network.getLinks();
+        double[] weights = new double[links.size()];
+        for (int k = 0; k < weights.length; k++) {
+            weights[k] = ((Link) links.get(k)).getWeight();
+        }
+        return new Instance(weights);
+    }
+
+    /**
+     * Stop the worker threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private synchronized BackPropagationNetwork network(int index) {
+        if (networks[index] == null) {
+            networks[index] = new BackPropagationNetworkFactory().createClassificationNetwork(layers);
+        }
+        return networks[index];
+    }
+
+    /**
+     * Score rows [from, to) of a slice
+     */
+    private static Result score(BackPropagationNetwork network, AKDataSet examples, int from, int to) {
+        Layer output = network.getOutputLayer();
+        int outputs = output.getNodeCount();
+        Result result = new Result(examples.getClassCount());
+        for (int i = from; i < to; i++) {
+            AKNetworkOptimizationProblem.setInput(network, examples, i);
+            network.run();
+
+            int label = examples.getLabel(i);
+            int predicted = 0;
+            double max = Double.NEGATIVE_INFINITY, sum = 0;
+            for (int k = 0; k < outputs; k++) {
+                double a = output.getNode(k).getActivation();
+                if (a > max) {
+                    max = a;
+                    predicted = k;
+                }
+                double diff = a - (k == label ? 1 : 0);
+                sum += diff * diff;
+            }
+            result.loss += .5 * sum;
+            result.confusion[label][predicted]++;
+            if (predicted == label) {
+                result.correct++;
+            }
+            result.total++;
+        }
+        return result;
+    }
+
+    /**
+     * The score of a network over a slice
+     */
+    public static class Result {
+        /** The number of rows classified correctly */
+        private int correct;
+        /** The number of rows scored */
+        private int total;
+        /** The sum of squares loss */
+        private double loss;
+        /** Row counts indexed by actual then predicted class */
+        private final int[][] confusion;
+
+        private Result(int classes) {
+            confusion = new int[classes][classes];
+        }
+
+        private void add(Result other) {
+            correct += other.correct;
+            total += other.total;
+            loss += other.loss;
+            for (int i = 0; i < confusion.length; i++) {
+                for (int j = 0; j < confusion[i].length; j++) {
+                    confusion[i][j] += other.confusion[i][j];
+                }
+            }
+        }
+
+        public int getCorrect() {
+            return correct;
+        }
+
+        public int getIncorrect() {
+            return total - correct;
+        }
+
+        public double getAccuracy() {
+            return total == 0 ? 0 : (double) correct / total;
+        }
+
+        public double getLoss() {
+            return loss;
+        }
+
+        /**
+         * Get the confusion matrix
+         * @return counts indexed by actual class, then predicted class
+         */
+        public int[][] getConfusion() {
+            return confusion;
+        }
+
+        /**
+         * Format the confusion matrix, one row per actual class
+         * @return the matrix
+         */
+        public String confusionTable() {
+            StringBuilder sb = new StringBuilder("actual \\ predicted\n");
+            for (int i = 0; i < confusion.length; i++) {
+                sb.append(String.format("%6d |", i));
+                for (int j = 0; j < confusion[i].length; j++) {
+                    sb.append(String.format("%7d", confusion[i][j]));
+                }
+                sb.append('\n');
+            }
+            return sb.toString();
+        }
+    }
+}
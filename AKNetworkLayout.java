@@ -0,0 +1,207 @@
+package opt.test;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import func.nn.Layer;
+import func.nn.LayeredNetwork;
+import func.nn.Link;
+import func.nn.Neuron;
+
+/**
+ * Where each weight of a layered network falls in a dense weight matrix per
+ * pair of adjacent layers. Weight k of the vector setWeights() takes is the
+ * weight of link k of getLinks(), and the layout maps it to a row (the unit
+ * it feeds) and column (the unit feeding it, the bias node last) of the
+ * matrix between the two layers, found from the link's end nodes rather than
+ * assumed from the order the links were made in.
+ *
+ * A node of a hidden or output layer that no link feeds is a bias node, as is
+ * a node feeding a link that no layer lists. Every node of the input layer is
+ * a unit; the ones past the data set's features keep the activation they had
+ * when the layout was taken.
+ *
+ * The units are those createClassificationNetwork() builds: tanh in the
+ * hidden layers, and a softmax output over more than one output or a
+ * logistic one otherwise. AKFloatNetwork.parity() checks an engine built on
+ * the layout against the network itself.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKNetworkLayout {
+    /** The units of each layer, input layer first, bias nodes not counted */
+    private final int[] sizes;
+    /** The activation of each layer's bias node, 0 for a layer without one */
+    private final double[] bias;
+    /** The activations of the input units when the layout was taken */
+    private final double[] inputs;
+    /** The matrix each link's weight falls in, matrix l feeding layer l + 1 */
+    private final int[] matrix;
+    /** The row of each link's weight */
+    private final int[] row;
+    /** The column of each link's weight */
+    private final int[] column;
+
+    /**
+     * Take the layout of a network
+     * @param network the network
+     */
+    public AKNetworkLayout(LayeredNetwork network) {
+        int count = network.getHiddenLayerCount() + 2;
+        Layer[] layers = new Layer[count];
+        layers[0] = network.getInputLayer();
+        for (int l = 1; l < count - 1; l++) {
+            layers[l] = network.getHiddenLayer(l - 1);
+        }
+        layers[count - 1] = network.getOutputLayer();
+
+        // layer and position in the layer of every listed node
+        Map<Neuron, int[]> where = new IdentityHashMap<Neuron, int[]>();
+        boolean[][] fed = new boolean[count][];
+        for (int l = 0; l < count; l++) {
+            fed[l] = new boolean[layers[l].getNodeCount()];
+            for (int i = 0; i < fed[l].length; i++) {
+                where.put(layers[l].getNode(i), new int[] { l, i });
+            }
+        }
+        List<?> links = network.getLinks();
+        for (Object o : links) {
+            int[] out = where.get(((Link) o).getOutNode());
+            if (out == null || out[0] == 0) {
+                throw new IllegalArgumentException("a link feeds a node outside the hidden and output layers");
+            }
+            fed[out[0]][out[1]] = true;
+        }
+
+        // number the units of each layer in list order, leaving out the bias nodes
+        int[][] unit = new int[count][];
+        sizes = new int[count];
+        for (int l = 0; l < count; l++) {
+            unit[l] = new int[fed[l].length];
+            for (int i = 0; i < fed[l].length; i++) {
+                unit[l][i] = l == 0 || fed[l][i] ? sizes[l]++ : -1;
+            }
+        }
+        if (sizes[count - 1] != fed[count - 1].length) {
+            throw new IllegalArgumentException("every output node must be fed by a link");
+        }
+        inputs = new double[sizes[0]];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = layers[0].getNode(i).getActivation();
+        }
+
+        bias = new double[count - 1];
+        Neuron[] biasNode = new Neuron[count - 1];
+        matrix = new int[links.size()];
+        row = new int[links.size()];
+        column = new int[links.size()];
+        for (int k = 0; k < links.size(); k++) {
+            Link link = (Link) links.get(k);
+            int[] out = where.get(link.getOutNode());
+            int[] in = where.get(link.getInNode());
+            int m = out[0] - 1;
+            matrix[k] = m;
+            row[k] = unit[out[0]][out[1]];
+            if (in == null || unit[in[0]][in[1]] < 0) {
+                if (biasNode[m] != null && biasNode[m] != link.getInNode()) {
+                    throw new IllegalArgumentException("layer " + m + " has more than one bias node");
+                }
+                biasNode[m] = link.getInNode();
+                bias[m] = link.getInNode().getActivation();
+                column[k] = sizes[m];
+            } else if (in[0] != m) {
+                throw new IllegalArgumentException("a link skips from layer " + in[0] + " to layer " + out[0]);
+            } else {
+                column[k] = unit[in[0]][in[1]];
+            }
+        }
+    }
+
+    /**
+     * Get the number of weight matrices, one less than the number of layers
+     * @return the number of matrices
+     */
+    public int getMatrixCount() {
+        return bias.length;
+    }
+
+    /**
+     * Get the number of units in a layer
+     * @param layer the layer, 0 for the input layer
+     * @return the units, bias node not counted
+     */
+    public int getSize(int layer) {
+        return sizes[layer];
+    }
+
+    /**
+     * Get the number of columns of a weight matrix
+     * @param m the matrix
+     * @return the units of layer m plus its bias node
+     */
+    public int getColumns(int m) {
+        return sizes[m] + 1;
+    }
+
+    /**
+     * Get the activation of a layer's bias node
+     * @param layer the layer, below the output layer
+     * @return the activation, 0 if the layer has no bias node
+     */
+    public double getBias(int layer) {
+        return bias[layer];
+    }
+
+    /**
+     * Get the activations of the input units when the layout was taken
+     * @return the activations, which the units past a data set's features keep
+     */
+    public double[] getInputs() {
+        return inputs.clone();
+    }
+
+    /**
+     * Get whether the output layer is a softmax rather than a logistic unit
+     * @return true for more than one output
+     */
+    public boolean isSoftMax() {
+        return sizes[sizes.length - 1] > 1;
+    }
+
+    /**
+     * Get the number of weights
+     * @return the number of links
+     */
+    public int getWeightCount() {
+        return matrix.length;
+    }
+
+    /**
+     * Get the matrix a weight falls in
+     * @param k the weight
+     * @return the matrix, matrix l feeding layer l + 1
+     */
+    public int getMatrix(int k) {
+        return matrix[k];
+    }
+
+    /**
+     * Get the row of a weight
+     * @param k the weight
+     * @return the unit of the layer above it feeds
+     */
+    public int getRow(int k) {
+        return row[k];
+    }
+
+    /**
+     * Get the column of a weight
+     * @param k the weight
+     * @return the unit of the layer below feeding it, or the layer's size for its bias node
+     */
+    public int getColumn(int k) {
+        return column[k];
+    }
+}
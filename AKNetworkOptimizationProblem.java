@@ -0,0 +1,339 @@
+package opt.test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import dist.Distribution;
+import func.nn.Layer;
+import func.nn.backprop.BackPropagationNetwork;
+import opt.ContinuousAddOneNeighbor;
+import opt.EvaluationFunction;
+import opt.HillClimbingProblem;
+import opt.NeighborFunction;
+import opt.example.NeuralNetworkWeightDistribution;
+import opt.ga.ContinuousAddOneMutation;
+import opt.ga.CrossoverFunction;
+import opt.ga.GeneticAlgorithmProblem;
+import opt.ga.MutationFunction;
+import opt.ga.UniformCrossOver;
+import shared.Instance;
+
+/**
+ * The NeuralNetworkOptimizationProblem over an AKDataSet. Rows are fed to the
+ * network straight from the flat feature matrix and the sum of squares error
+ * against the one hot label is computed from the output activations, so a
+ * fitness pass allocates nothing per row. Neighbors, mutation and crossover are
+ * the same operators the ABAGAIL problem uses.
+ *
+ * In mini-batch mode value() estimates the error on a subset of the rows,
+ * scaled up to the size of the full set, so each call costs a batch rather
+ * than a full pass. The batch is either a window that rotates through the
+ * rows or a fresh random sample, and moves on after a set number of calls or
+ * when nextBatch() is called. fullValue() always uses every row.
+ *
+ * With setMatrixForward() the fitness passes run a block of rows at a time on
+ * an AKMatrixNetwork, and with setFloatForward() in float on an
+ * AKFloatNetwork, either after a parity check against the network on the
+ * first rows.
+ *
+ * A problem drives its own network and is not thread safe. To score a
+ * population on several threads give each thread its own problem over its own
+ * network, e.g. through an AKPopulationEvaluator.Factory.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKNetworkOptimizationProblem implements HillClimbingProblem, GeneticAlgorithmProblem, EvaluationFunction {
+    /** The rows the float forward pass is checked on */
+    private static final int PARITY_ROWS = 500;
+    /** The largest output difference from the network the float forward pass may have */
+    private static final double PARITY_TOLERANCE = 1e-4;
+    /** The largest output difference from the network the matrix forward pass may have */
+    private static final double MATRIX_TOLERANCE = 1e-9;
+
+    /** The network being optimized */
+    private final BackPropagationNetwork network;
+    /** The examples */
+    private final AKDataSet examples;
+    /** The weight distribution */
+    private final Distribution dist;
+    /** The neighbor function */
+    private final NeighborFunction neighbor = new ContinuousAddOneNeighbor();
+    /** The mutation function */
+    private final MutationFunction mutate = new ContinuousAddOneMutation();
+    /** The crossover function */
+    private final CrossoverFunction crossover = new UniformCrossOver();
+    /** The rows of the current batch, or null to use every row */
+    private int[] batch;
+    /** Whether batches are sampled at random rather than rotated */
+    private boolean sampled;
+    /** The number of value() calls per batch, or 0 to only move on in nextBatch() */
+    private int callsPerBatch;
+    /** The value() calls made on the current batch */
+    private int calls;
+    /** The first row of the next rotating batch */
+    private int next;
+    /** The float forward pass scoring instead of the network, or null */
+    private AKFloatNetwork floatNetwork;
+    /** The matrix forward pass scoring instead of the network, or null */
+    private AKMatrixNetwork matrixNetwork;
+
+    /**
+     * Make a new network optimization problem
+     * @param examples the examples to score against
+     * @param network the network whose weights are optimized
+     */
+    public AKNetworkOptimizationProblem(AKDataSet examples, BackPropagationNetwork network) {
+        this.examples = examples;
+        this.network = network;
+        this.dist = new NeuralNetworkWeightDistribution(network.getLinks().size());
+    }
+
+    /**
+     * The inverse of the sum of squares error of the network over the examples
+     * @see opt.OptimizationProblem#value(shared.Instance)
+     */
+    public double value(Instance d) {
+        if (batch == null) {
+            return fullValue(d);
+        }
+        if (callsPerBatch > 0 && calls++ == callsPerBatch) {
+            nextBatch();
+            calls = 1;
+        }
+        if (matrixNetwork != null) {
+            matrixNetwork.setWeights(d.getData());
+            return 1 / (matrixNetwork.error(examples, batch) * examples.size() / batch.length);
+        }
+        double error = 0;
+        if (floatNetwork != null) {
+            floatNetwork.setWeights(d.getData());
+            for (int i = 0; i < batch.length; i++) {
+                error += floatNetwork.rowError(examples, batch[i]);
+            }
+        } else {
+            network.setWeights(d.getData());
+            Layer output = network.getOutputLayer();
+            int outputs = output.getNodeCount();
+            for (int i = 0; i < batch.length; i++) {
+                error += rowError(network, output, outputs, examples, batch[i]);
+            }
+        }
+        return 1 / (error * examples.size() / batch.length);
+    }
+
+    /**
+     * The inverse of the sum of squares error over every example, whatever the mode
+     * @param d the weights
+     * @return the value
+     */
+    public double fullValue(Instance d) {
+        if (matrixNetwork != null) {
+            matrixNetwork.setWeights(d.getData());
+            return 1 / matrixNetwork.error(examples);
+        }
+        if (floatNetwork != null) {
+            floatNetwork.setWeights(d.getData());
+            return 1 / floatNetwork.error(examples);
+        }
+        network.setWeights(d.getData());
+        return 1 / error(network, examples);
+    }
+
+    /**
+     * Run the fitness passes in float arithmetic, which is faster and, once the
+     * parity check passes, changes the error only by float rounding
+     * @param on true for the float forward pass, false for the network's own
+     * @throws IllegalStateException if the float pass doesn't match the network on the first rows
+     */
+    public void setFloatForward(boolean on) {
+        if (!on) {
+            floatNetwork = null;
+            return;
+        }
+        AKFloatNetwork engine = new AKFloatNetwork(network);
+        AKFloatNetwork.Parity parity = engine.parity(network, examples.view(0, Math.min(examples.size(), PARITY_ROWS)));
+        if (parity.getMaxDifference() > PARITY_TOLERANCE) {
+            throw new IllegalStateException("the float forward pass doesn't match the network: " + parity);
+        }
+        floatNetwork = engine;
+        matrixNetwork = null;
+    }
+
+    /**
+     * Run the fitness passes as matrix products over blocks of rows, with the
+     * weights read in place from the instance being scored
+     * @param on true for the matrix forward pass, false for the network's own
+     * @throws IllegalStateException if the matrix pass doesn't match the network on the first rows
+     */
+    public void setMatrixForward(boolean on) {
+        if (!on) {
+            matrixNetwork = null;
+            return;
+        }
+        AKMatrixNetwork engine = new AKMatrixNetwork(network);
+        double difference = engine.maxDifference(network, examples.view(0, Math.min(examples.size(), PARITY_ROWS)));
+        if (difference > MATRIX_TOLERANCE) {
+            throw new IllegalStateException("the matrix forward pass is off the network by up to " + difference);
+        }
+        matrixNetwork = engine;
+        floatNetwork = null;
+    }
+
+    /**
+     * Score against a subset of the examples from now on
+     * @param batchSize the number of rows in a batch
+     * @param callsPerBatch the value() calls before moving to the next batch,
+     *        e.g. the population size for a GA, or 0 to move on only in nextBatch()
+     * @param sampled true to sample each batch at random, false to rotate a window through the rows
+     */
+    public void setMiniBatch(int batchSize, int callsPerBatch, boolean sampled) {
+        if (batchSize <= 0 || batchSize >= examples.size()) {
+            batch = null;
+            return;
+        }
+        this.batch = new int[batchSize];
+        this.callsPerBatch = callsPerBatch;
+        this.sampled = sampled;
+        this.calls = 0;
+        this.next = 0;
+        nextBatch();
+    }
+
+    /**
+     * Move on to the next batch
+     */
+    public void nextBatch() {
+        if (batch == null) {
+            return;
+        }
+        int n = examples.size();
+        if (sampled) {
+            // Floyd's algorithm draws distinct rows without an n sized scratch array
+            Set<Integer> chosen = new HashSet<Integer>();
+            int k = 0;
+            for (int j = n - batch.length; j < n; j++) {
+                int t = Distribution.random.nextInt(j + 1);
+                if (!chosen.add(t)) {
+                    chosen.add(j);
+                    t = j;
+                }
+                batch[k++] = t;
+            }
+        } else {
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = (next + i) % n;
+            }
+            next = (next + batch.length) % n;
+        }
+        calls = 0;
+    }
+
+    /**
+     * Whether value() is scoring a batch rather than every row
+     * @return true in mini-batch mode
+     */
+    public boolean isMiniBatch() {
+        return batch != null;
+    }
+
+    /**
+     * Compute the sum of squares error of a network's current weights, the same
+     * as summing shared.SumOfSquaresError over the rows
+     * @param network the network
+     * @param examples the examples
+     * @return the error
+     */
+    public static double error(BackPropagationNetwork network, AKDataSet examples) {
+        Layer output = network.getOutputLayer();
+        int outputs = output.getNodeCount();
+        double error = 0;
+        for (int i = 0; i < examples.size(); i++) {
+            error += rowError(network, output, outputs, examples, i);
+        }
+        return error;
+    }
+
+    private static double rowError(BackPropagationNetwork network, Layer output, int outputs,
+            AKDataSet examples, int row) {
+        setInput(network, examples, row);
+        network.run();
+        int label = examples.getLabel(row);
+        double sum = 0;
+        for (int k = 0; k < outputs; k++) {
+            double diff = output.getNode(k).getActivation() - (k == label ? 1 : 0);
+            sum += diff * diff;
+        }
+        return .5 * sum;
+    }
+
+    /**
+     * Feed one row of a data set to the network's input layer
+     * @param network the network
+     * @param examples the data set
+     * @param row the row
+     */
+    public static void setInput(BackPropagationNetwork network, AKDataSet examples, int row) {
+        Layer input = network.getInputLayer();
+        double[] features = examples.getFeatures();
+        int start = examples.rowStart(row);
+        for (int j = 0; j < examples.getFeatureCount(); j++) {
+            input.getNode(j).setActivation(features[start + j]);
+        }
+    }
+
+    /**
+     * Get the class the network predicts for the input it last ran on
+     * @param network the network
+     * @return the index of the largest output
+     */
+    public static int predict(BackPropagationNetwork network) {
+        Layer output = network.getOutputLayer();
+        int best = 0;
+        double max = output.getNode(0).getActivation();
+        for (int k = 1; k < output.getNodeCount(); k++) {
+            double a = output.getNode(k).getActivation();
+            if (a > max) {
+                max = a;
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @see opt.OptimizationProblem#random()
+     */
+    public Instance random() {
+        return dist.sample(null);
+    }
+
+    /**
+     * @see opt.HillClimbingProblem#neighbor(shared.Instance)
+     */
+    public Instance neighbor(Instance d) {
+        return neighbor.neighbor(d);
+    }
+
+    /**
+     * @see opt.ga.GeneticAlgorithmProblem#mate(shared.Instance, shared.Instance)
+     */
+    public Instance mate(Instance a, Instance b) {
+        return crossover.mate(a, b);
+    }
+
+    /**
+     * @see opt.ga.GeneticAlgorithmProblem#mutate(shared.Instance)
+     */
+    public void mutate(Instance d) {
+        mutate.mutate(d);
+    }
+
+    public BackPropagationNetwork getNetwork() {
+        return network;
+    }
+
+    public AKDataSet getExamples() {
+        return examples;
+    }
+}
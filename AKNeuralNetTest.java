@@ -8,6 +8,7 @@ import shared.*;
 import func.nn.backprop.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
 import java.text.*;
 
@@ -19,22 +20,45 @@ import java.text.*;
  * @version 1.0
  */
 public class AKNeuralNetTest {
-    private static Instance[] instances = initializeInstances();
+    // path to the gym csv, relative to the ABAGAIL directory unless overridden with -Dgym.data=...
+    private static String dataPath = System.getProperty("gym.data", "src/opt/test/filtered_gym_data.csv");
+    // number of grid cells / trials run at once
+    private static int threads = Runtime.getRuntime().availableProcessors();
+
+    // 20000 shuffled rows: the first 15000 train, the rest are held out for testing
+    private static AKDataSet data = initializeData(dataPath);
+    private static AKDataSet train = data.view(0, 15000), test = data.view(15000, data.size());
 
     private static int inputLayer = 10, hiddenLayer1 = 50, hiddenLayer2 = 50, hiddenLayer3 = 50, outputLayer = 8;
+    private static int[] layers = new int[] { inputLayer, hiddenLayer1, hiddenLayer2, hiddenLayer3, outputLayer };
     private static BackPropagationNetworkFactory factory = new BackPropagationNetworkFactory();
-
-    private static ErrorMeasure measure = new SumOfSquaresError();
-
-    private static DataSet set = new DataSet(instances);
+    // scores the accuracy of one network at a time, splitting the rows across threads; the trials score on their own thread
+    private static AKNetworkEvaluator evaluator = new AKNetworkEvaluator(layers, threads);
 
     // private static String results = "";
     private static int redundancy = 3;
+    // iterations without improvement before an accVsIterations trial stops early, 0 to run every trial to each milestone;
+    // a stopped trial's later milestones report the weights it stopped with, and each row shows the iterations run
+    private static int stallIterations = 0;
+    // iterations between those early stopping checks, each a pass over every row; 0 checks every 10 iterations, or with
+    // batchSize > 0 every 10 * rows / batchSize, so the checks add about a twentieth to a step's 2 * batchSize rows
+    private static int stallCheckInterval = 0;
+    // rows per fitness estimate in accVsIterations, 0 scores every row
+    private static int batchSize = 0;
+    // with batchSize > 0, re-check each move rhc and sa accept on every row, one full pass per accepted move
+    private static boolean verifyBatches = false;
+    // successive halving: iterations every configuration gets first, and the cut / budget growth factor per rung
+    private static int halvingMin = 100;
+    private static double halvingEta = 3;
+    // score weights with a float forward pass (AKFloatNetwork) instead of the network; accuracy is still measured on the network
+    private static boolean floatForward = false;
+    // score weights a block of rows at a time with the weights as matrices (AKMatrixNetwork); floatForward overrides it
+    private static boolean matrixForward = true;
+    // train backprop with the batch split across threads (AKParallelBackPropTrainer) instead of BatchBackPropagationTrainer,
+    // once it has matched BatchBackPropagationTrainer for parityEpochs epochs on parityRows rows
+    private static boolean parallelBackprop = true;
+    private static int parityEpochs = 20, parityRows = 500;
 
-    private static BackPropagationNetwork networks[] = new BackPropagationNetwork[redundancy * 3];
-    private static NeuralNetworkOptimizationProblem[] nnop = new NeuralNetworkOptimizationProblem[redundancy * 3];
-
-    private static OptimizationAlgorithm[] oa = new OptimizationAlgorithm[redundancy * 3];
     private static String[] oaNames = { "Randomized Hill Climbing", "Simulated Annealing", "Standard Genetic Algorithm"};
 
     private static DecimalFormat df = new DecimalFormat("0.000");
@@ -54,13 +78,19 @@ public class AKNeuralNetTest {
                 {0.03, 0.06, 0.12 }, // to mutate
             }
         };
-        gridSearch(paramGrid);
+        // successive halving over the same grid; gridSearch trains every cell for the full iterations
+        adaptiveSearch(paramGrid);
+        // gridSearch(paramGrid);
 
         // use optimal hyperparams vs iterations
         int[] trainingIterations = new int[]{
             1, 10, 50, 100, 250, 500,
              750, 1000, 2000};
         accVsIterations(trainingIterations);
+
+        // one parallel tempering run over a temperature ladder instead of the sa grid
+        replicaExchange(trainingIterations);
+        evaluator.shutdown();
     }
 
     private static void backpropNeuralNet() {
@@ -71,90 +101,44 @@ public class AKNeuralNetTest {
         //     patterns[i] = new Instance(data[i][0]);
         //     patterns[i].setLabel(new Instance(data[i][1]));
         // }
-        BackPropagationNetwork net = factory.createClassificationNetwork(
-                new int[] { inputLayer, hiddenLayer1, hiddenLayer2, hiddenLayer3, outputLayer });
-
-        DataSet trainset = new DataSet(Arrays.copyOfRange(instances, 0, 15000));
-        // ConvergenceTrainer c_trainer = new ConvergenceTrainer(
-        //     );
-        FixedIterationTrainer trainer = new FixedIterationTrainer(
-                new BatchBackPropagationTrainer(trainset, net, new SumOfSquaresError(), new RPROPUpdateRule()), 1000);
+        BackPropagationNetwork net = factory.createClassificationNetwork(layers);
+
         System.out.println("Training with Backprop");
-        trainer.train();
-        // System.out.println("Convergence in " + trainer.getIterations() + " iterations");
-
-        Instance actual, predicted;
-        double correct = 0, incorrect = 0;
-        for (int i = 0; i < 15000; i++) {
-            net.setInputValues(instances[i].getData());
-            net.run();
-            // System.out.println("~~");
-            // System.out.println(instances[i].getLabel());
-            // System.out.println(network.getOutputValues());
-
-            predicted = instances[i].getLabel();
-            actual = new Instance(net.getOutputValues());
-
-            if (predicted.getData().argMax() == actual.getData().argMax()) {
-                correct++;
-            } else {
-                incorrect++;
+        boolean parallel = parallelBackprop;
+        if (parallel) {
+            AKParallelBackPropTrainer.Parity parity = AKParallelBackPropTrainer.parity(
+                    train.view(0, Math.min(train.size(), parityRows)), layers, parityEpochs, threads);
+            System.out.println("Parallel backprop vs BatchBackPropagationTrainer: " + parity);
+            if (!parity.matches(1e-6)) {
+                System.out.println("Parallel backprop doesn't match, training with BatchBackPropagationTrainer");
+                parallel = false;
             }
         }
-        double accuracy = correct / (correct + incorrect);
-        System.out.println("\nCorrectly classified " + correct + " instances." + "\nIncorrectly classified "
-                + incorrect + " instances.\nPercent correctly classified: " + df.format(accuracy));
+        if (parallel) {
+            AKParallelBackPropTrainer backprop = new AKParallelBackPropTrainer(train, net, threads);
+            new FixedIterationTrainer(backprop, 1000).train();
+            backprop.shutdown();
+        } else {
+            DataSet trainset = new DataSet(train.toInstances());
+            FixedIterationTrainer trainer = new FixedIterationTrainer(
+                    new BatchBackPropagationTrainer(trainset, net, new SumOfSquaresError(), new RPROPUpdateRule()), 1000);
+            trainer.train();
+        }
+
+        AKNetworkEvaluator.Result r = evaluator.evaluate(AKNetworkEvaluator.weights(net), train);
+        System.out.println("\nCorrectly classified " + r.getCorrect() + " instances." + "\nIncorrectly classified "
+                + r.getIncorrect() + " instances.\nPercent correctly classified: " + df.format(r.getAccuracy()));
+        System.out.println(r.confusionTable());
     }
 
     private static void gridSearch(double[][][] paramGrid) {
         System.out.println("GRID SEARCH OA PARAMS");
-        String summary = "";
+        AKGridSearch<AKGridSearch.Result> search = new AKGridSearch<AKGridSearch.Result>(threads);
         // grid search sa
         for (double t0 : paramGrid[0][0]) {
             for (double coolingRate: paramGrid[0][1]) {
-                BackPropagationNetwork net = factory.createClassificationNetwork(
-                    new int[] { inputLayer, hiddenLayer1, hiddenLayer2, hiddenLayer3, outputLayer });
-                NeuralNetworkOptimizationProblem netProb = new NeuralNetworkOptimizationProblem(set, net, measure);
-                OptimizationAlgorithm oa = new SimulatedAnnealing(t0, coolingRate, netProb);
-
-                double start = System.nanoTime(), end, trainingTime, testingTime, correct = 0, incorrect = 0;
-
-                train(oa, net, "|| SA || t0: " + t0 + ", coolingRate: " + coolingRate, 2000, 200, false);
-
-                end = System.nanoTime();
-                trainingTime = end - start;
-                trainingTime /= Math.pow(10, 9);
-
-                Instance optimalInstance = oa.getOptimal();
-                net.setWeights(optimalInstance.getData());
-
-                Instance predicted;
-                Instance actual;
-                start = System.nanoTime();
-                for (int j = 15000; j < instances.length; j++) { // test set with optimal instance
-                    net.setInputValues(instances[j].getData());
-                    net.run();
-
-                    predicted = instances[j].getLabel();
-                    actual = new Instance(net.getOutputValues());
-
-                    if (predicted.getData().argMax() == actual.getData().argMax()) {
-                        correct++;
-                    } else {
-                        incorrect++;
-                    }
-                }
-                end = System.nanoTime();
-                testingTime = end - start;
-                testingTime /= Math.pow(10, 9);
-                double accuracy = correct / (correct + incorrect);
-
-                String result = "\nResults for " + "|| SA || t0: " + t0 + ", coolingRate: " + coolingRate + ": \nCorrectly classified " + correct + " instances."
-                        + "\nIncorrectly classified " + incorrect + " instances.\nPercent correctly classified: "
-                        + df.format(accuracy) + "%\nTraining time: " + df.format(trainingTime)
-                        + " seconds\nTesting time: " + df.format(testingTime) + " seconds\n";
-                System.out.println(result);
-
+                search.add(gridCell("|| SA || t0: " + t0 + ", coolingRate: " + coolingRate,
+                        new double[] { t0, coolingRate }, 2000));
             }
         }
 
@@ -162,134 +146,144 @@ public class AKNeuralNetTest {
         for (double popSize : paramGrid[1][0]) {
             for (double toMate : paramGrid[1][1]) {
                 for (double toMutate: paramGrid[1][2]) {
-                    System.out.println("Creating problem");
-                    BackPropagationNetwork net = factory.createClassificationNetwork(
-                        new int[] { inputLayer, hiddenLayer1, hiddenLayer2, hiddenLayer3, outputLayer });
-                    NeuralNetworkOptimizationProblem netProb = new NeuralNetworkOptimizationProblem(set, net, measure);
-                    OptimizationAlgorithm oa = new StandardGeneticAlgorithm((int) popSize, (int) (toMate * popSize),
-                            (int) (toMutate * popSize), netProb);
-
-                    double start = System.nanoTime(), end, trainingTime, testingTime, correct = 0, incorrect = 0;
-
-                    train(oa, net, "|| GA || popSize: " + popSize + ", toMate: " + toMate + ", toMutate: " + toMutate, 1000, 200, false);
-
-                    end = System.nanoTime();
-                    trainingTime = end - start;
-                    trainingTime /= Math.pow(10, 9);
-
-                    Instance optimalInstance = oa.getOptimal();
-                    net.setWeights(optimalInstance.getData());
-
-                    Instance predicted;
-                    Instance actual;
-                    start = System.nanoTime();
-                    for (int j = 15000; j < instances.length; j++) { // test set with optimal instance
-                        net.setInputValues(instances[j].getData());
-                        net.run();
-
-                        predicted = instances[j].getLabel();
-                        actual = new Instance(net.getOutputValues());
-
-                        if (predicted.getData().argMax() == actual.getData().argMax()) {
-                            correct++;
-                        } else {
-                            incorrect++;
-                        }
-                    }
-                    end = System.nanoTime();
-                    testingTime = end - start;
-                    testingTime /= Math.pow(10, 9);
-                    double accuracy = correct / (correct + incorrect);
-
-                    String result = "\nResults for " + "|| GA || popSize: " + popSize + ", toMate: " + toMate
-                            + ", toMutate: " + ": \nCorrectly classified " + correct
-                            + " instances." + "\nIncorrectly classified " + incorrect
-                            + " instances.\nPercent correctly classified: " + df.format(accuracy) + "%\nTraining time: "
-                            + df.format(trainingTime) + " seconds\nTesting time: " + df.format(testingTime)
-                            + " seconds\n";
-                    System.out.println(result);
+                    search.add(gridCell("|| GA || popSize: " + popSize + ", toMate: " + toMate + ", toMutate: " + toMutate,
+                            new double[] { popSize, toMate, toMutate }, 1000));
                 }
             }
         }
 
+        List<AKGridSearch.Result> table = search.run();
+        for (AKGridSearch.Result r : table) {
+            String result = "\nResults for " + r.getLabel() + ": \nCorrectly classified " + r.getCorrect() + " instances."
+                    + "\nIncorrectly classified " + r.getIncorrect() + " instances.\nPercent correctly classified: "
+                    + df.format(r.getAccuracy()) + "%\nTraining time: " + df.format(r.getTrainingTime())
+                    + " seconds\nTesting time: " + df.format(r.getTestingTime()) + " seconds\n";
+            System.out.println(result);
+        }
+        System.out.println(AKGridSearch.table(table));
     }
 
-    private static void accVsIterations(int[] iterations) {
-        System.out.println("Measuring Accuracy vs Iterations");
-
-        for (int iter: iterations) {
-            System.out.println("\n##################\n" + iter + " Iterations");
-
-            String results = "";
-
-            System.out.println("\t(Re) Initializing Networks and Optimization Problems");
+    /**
+     * Search the grid by successive halving instead: every configuration trains
+     * halvingMin iterations and the best 1 / halvingEta go on with halvingEta
+     * times the budget, up to the grid search's 2000 sa and 1000 ga iterations.
+     * Configurations are scored on the test set, as the grid search scores them.
+     */
+    private static void adaptiveSearch(double[][][] paramGrid) {
+        System.out.println("SUCCESSIVE HALVING OA PARAMS");
+        int[] maxIterations = { 2000, 1000 };
+        for (int g = 0; g < maxIterations.length; g++) {
+            List<double[]> configs = AKSuccessiveHalving.grid(paramGrid[g]);
+            AKSuccessiveHalving search = new AKSuccessiveHalving(halvingMin, maxIterations[g], halvingEta, threads);
+            List<AKSuccessiveHalving.Result> ranking = search.run(configs, new AKSuccessiveHalving.Factory() {
+                public AKSuccessiveHalving.Candidate create(double[] params) {
+                    return candidate(params);
+                }
+            });
+            search.shutdown();
+            System.out.println((g == 0 ? "SA" : "GA") + ": " + search.getSpent() + " of "
+                    + configs.size() * maxIterations[g] + " grid search iterations\n"
+                    + AKSuccessiveHalving.table(ranking));
+        }
+    }
 
-            for (int i = 0; i < oa.length; i++) {
-                networks[i] = factory.createClassificationNetwork(
-                        new int[] { inputLayer, hiddenLayer1, hiddenLayer2, hiddenLayer3, outputLayer });
-                nnop[i] = new NeuralNetworkOptimizationProblem(set, networks[i], measure);
+    /**
+     * Make one successive halving candidate, built like a grid search cell and
+     * scored by its test set accuracy
+     */
+    private static AKSuccessiveHalving.Candidate candidate(double[] params) {
+        final BackPropagationNetwork net = factory.createClassificationNetwork(layers);
+        AKNetworkOptimizationProblem netProb = problem(net);
+        final OptimizationAlgorithm oa;
+        if (params.length == 2) {
+            oa = new SimulatedAnnealing(params[0], params[1], netProb);
+        } else {
+            int popSize = (int) params[0];
+            oa = new StandardGeneticAlgorithm(popSize, (int) (params[1] * popSize),
+                    (int) (params[2] * popSize), netProb);
+        }
+        return new AKSuccessiveHalving.Candidate() {
+            public void train(int iterations) {
+                for (int i = 0; i < iterations; i++) {
+                    oa.train();
+                }
             }
-            System.out.println("Made nns");
 
-            double[] avgTestAccuracy = new double[3];
-            double[] avgTrainAccuracy = new double[3];
-
-            for (int i = 0; i < oa.length; i++) {
+            public double score() {
+                net.setWeights(oa.getOptimal().getData());
+                return AKNetworkEvaluator.evaluate(net, test).getAccuracy();
+            }
+        };
+    }
 
-                if (i < redundancy) {
-                    // continue;
-                    oa[i] = new RandomizedHillClimbing(nnop[i]);
-                } else if (i < (redundancy * 2)) {
-                    // continue;
-                    oa[i] = new SimulatedAnnealing(1E11, .25, nnop[i]);
+    /**
+     * Make one grid search cell. Two params build simulated annealing (t0, cooling rate),
+     * three build a genetic algorithm (pop size, to mate, to mutate). The cell owns its
+     * network, problem and optimizer so it can run alongside the others.
+     */
+    private static Callable<AKGridSearch.Result> gridCell(final String label, final double[] params, final int iter) {
+        return new Callable<AKGridSearch.Result>() {
+            public AKGridSearch.Result call() {
+                BackPropagationNetwork net = factory.createClassificationNetwork(layers);
+                AKNetworkOptimizationProblem netProb = problem(net);
+                OptimizationAlgorithm oa;
+                if (params.length == 2) {
+                    oa = new SimulatedAnnealing(params[0], params[1], netProb);
                 } else {
-                    // continue;
-                    oa[i] = new StandardGeneticAlgorithm(250, (int) (0.05 * 250), (int) (0.03 * 250), nnop[i]);
+                    int popSize = (int) params[0];
+                    oa = new StandardGeneticAlgorithm(popSize, (int) (params[1] * popSize),
+                            (int) (params[2] * popSize), netProb);
                 }
-                System.out.println("\n================================\n\t" + oaNames[i / redundancy] + ": Trial " + (i % redundancy));
-                double start = System.nanoTime(), end, trainingTime, testingTime, correct = 0, incorrect = 0;
 
-                double training_acc = train(oa[i], networks[i], oaNames[i / redundancy] + "@ iter: " + iter, iter, 50, true); //trainer.train();
+                double start = System.nanoTime(), end, trainingTime, testingTime;
+
+                train(oa, net, label, iter, 200, false);
+
                 end = System.nanoTime();
                 trainingTime = end - start;
                 trainingTime /= Math.pow(10, 9);
 
-                Instance optimalInstance = oa[i].getOptimal();
-                networks[i].setWeights(optimalInstance.getData());
-
-                Instance predicted;
-                Instance actual;
                 start = System.nanoTime();
-                for (int j = 15000; j < instances.length; j++) { // test set with optimal instance
-                    networks[i].setInputValues(instances[j].getData());
-                    networks[i].run();
-
-                    predicted = instances[j].getLabel();
-                    // System.out.println(predicted);
-                    actual = new Instance(networks[i].getOutputValues());
-                    // System.out.println(actual);
-
-                    if (predicted.getData().argMax() == actual.getData().argMax()) {
-                        correct++;
-                    } else {
-                        incorrect++;
-                    }
-                }
-                System.out.println("%%%%%%%%%%%%%%% correct testing: " + correct);
+                AKNetworkEvaluator.Result r = AKNetworkEvaluator.evaluate(net, test); // test set with optimal instance
                 end = System.nanoTime();
                 testingTime = end - start;
                 testingTime /= Math.pow(10, 9);
-                double accuracy = correct / (correct + incorrect);
-                avgTestAccuracy[i / redundancy] += accuracy / (redundancy * 1.0);
-                avgTrainAccuracy[i / redundancy] += training_acc / (redundancy * 1.0);
 
-                String result = "\nResults for " + oaNames[i / redundancy] + "\nTraining Accuracy: " + training_acc + "\nTest Accuracy: "
-                        + df.format(accuracy) + "%\nTraining time: " + df.format(trainingTime) + " seconds\nTesting time: "
-                        + df.format(testingTime) + " seconds\n";
+                return new AKGridSearch.Result(label, params, r.getCorrect(), r.getIncorrect(), trainingTime, testingTime);
+            }
+        };
+    }
+
+    private static void accVsIterations(int[] iterations) {
+        System.out.println("Measuring Accuracy vs Iterations");
+        AKTrialRunner runner = new AKTrialRunner(threads);
+
+        // every trial trains once up to the largest iteration count, scoring itself at each milestone
+        for (int i = 0; i < redundancy * oaNames.length; i++) {
+            runner.add(trial(i / redundancy, i % redundancy, iterations));
+        }
+        List<AKTrialRunner.Trial> all = runner.run();
+
+        for (int iter: iterations) {
+            System.out.println("\n##################\n" + iter + " Iterations");
+
+            List<AKTrialRunner.Trial> trials = AKTrialRunner.atIterations(all, iter);
+
+            for (AKTrialRunner.Trial t : trials) {
+                System.out.println("\n================================\n\t" + oaNames[t.getGroup()] + ": Trial " + t.getNumber());
+                String result = "\nResults for " + oaNames[t.getGroup()]
+                        + (t.getTrainedIterations() < iter ? "\nStopped early after " + t.getTrainedIterations()
+                                + " iterations" : "")
+                        + "\nTraining Accuracy: " + t.getTrainAccuracy()
+                        + "\nTest Accuracy: " + df.format(t.getTestAccuracy()) + "%\nTraining time: "
+                        + df.format(t.getTrainingTime()) + " seconds\nTesting time: "
+                        + df.format(t.getTestingTime()) + " seconds\n";
                 System.out.println(result);
-                results += result;
             }
 
+            double[] avgTestAccuracy = AKTrialRunner.average(trials, oaNames.length, AKTrialRunner.TEST_ACCURACY);
+            double[] avgTrainAccuracy = AKTrialRunner.average(trials, oaNames.length, AKTrialRunner.TRAIN_ACCURACY);
+
             System.out.println("\n");
             for (int i = 0; i < avgTestAccuracy.length; i++) {
                 System.out.println(oaNames[i] + "\n\ttraining Accuracy" + avgTrainAccuracy[i] + "\n\ttesting Accuracy"
@@ -298,9 +292,151 @@ public class AKNeuralNetTest {
         }
     }
 
+    /**
+     * Make one accuracy vs iterations trial. The trial owns its network, problem and
+     * optimizer (0 = RHC, 1 = SA, 2 = GA) so it can run alongside the others, and
+     * reports train and test accuracy at every iteration milestone of a single run.
+     * Training time at a milestone is the optimizer time spent reaching it.
+     */
+    private static Callable<List<AKTrialRunner.Trial>> trial(final int group, final int number, final int[] iterations) {
+        return new Callable<List<AKTrialRunner.Trial>>() {
+            public List<AKTrialRunner.Trial> call() {
+                final BackPropagationNetwork network = factory.createClassificationNetwork(layers);
+                final AKNetworkOptimizationProblem nnop = problem(network);
+                final OptimizationAlgorithm oa;
+                if (batchSize > 0) {
+                    // the optimizers move to the next batch themselves, once per step or generation
+                    nnop.setMiniBatch(batchSize, 0, false);
+                }
+                if (group == 0) {
+                    oa = batchSize > 0 ? batched(new AKMiniBatchSearch(nnop)) : new RandomizedHillClimbing(nnop);
+                } else if (group == 1) {
+                    oa = batchSize > 0 ? batched(new AKMiniBatchSearch(1E11, .25, nnop)) : new SimulatedAnnealing(1E11, .25, nnop);
+                } else {
+                    oa = batchSize > 0 ? batched(nnop) : new StandardGeneticAlgorithm(250, (int) (0.05 * 250), (int) (0.03 * 250), nnop);
+                }
+                System.out.println("\nError results for " + oaNames[group] + " trial " + number + "\n---------------------------");
+
+                final List<AKTrialRunner.Trial> results = new ArrayList<AKTrialRunner.Trial>();
+                // with stallIterations, stop early once the error over every row stops falling, not one batch's
+                // error; later milestones report the converged weights
+                final AKConvergenceTrainer run;
+                if (stallIterations > 0) {
+                    EvaluationFunction fullError = new EvaluationFunction() {
+                        public double value(Instance d) {
+                            return nnop.fullValue(d);
+                        }
+                    };
+                    run = AKConvergenceTrainer.onPlateau(oa, fullError, stallIterations, stallCheckInterval());
+                } else {
+                    run = null;
+                }
+                AKMilestoneTrainer trainer = new AKMilestoneTrainer(run == null ? oa : run, iterations,
+                        new AKMilestoneTrainer.Listener() {
+                    private double trainingTime = 0;
+                    private double start = System.nanoTime();
+
+                    public void milestone(int iter) {
+                        double end = System.nanoTime();
+                        trainingTime += (end - start) / Math.pow(10, 9);
+
+                        network.setWeights(oa.getOptimal().getData());
+                        double trainingAccuracy = AKNetworkEvaluator.evaluate(network, train).getAccuracy();
+
+                        double testStart = System.nanoTime();
+                        double accuracy = AKNetworkEvaluator.evaluate(network, test).getAccuracy();
+                        double testingTime = (System.nanoTime() - testStart) / Math.pow(10, 9);
+
+                        int trained = run == null ? iter : run.getIterations();
+                        results.add(new AKTrialRunner.Trial(group, number, iter, trained, trainingAccuracy, accuracy,
+                                trainingTime, testingTime));
+                        start = System.nanoTime();
+                    }
+                });
+                trainer.train();
+                if (run != null) {
+                    System.out.println(oaNames[group] + " trial " + number + " " + run);
+                }
+                return results;
+            }
+        };
+    }
+
+    /**
+     * Train with parallel tempering, one chain per thread on a ladder of fixed
+     * temperatures, each chain scoring with its own network, and report accuracy
+     * at every iteration milestone. An iteration is one step on every chain.
+     */
+    private static void replicaExchange(int[] iterations) {
+        System.out.println("Parallel Tempering");
+        final BackPropagationNetwork network = factory.createClassificationNetwork(layers);
+        AKNetworkOptimizationProblem nnop = problem(network);
+        final AKReplicaExchangeAnnealing pt = new AKReplicaExchangeAnnealing(1E-10, 1E-6, threads, 1, nnop,
+                new AKPopulationEvaluator.Factory() {
+                    public EvaluationFunction create() {
+                        return problem(factory.createClassificationNetwork(layers));
+                    }
+                }, null);
+        new AKMilestoneTrainer(pt, iterations, new AKMilestoneTrainer.Listener() {
+            public void milestone(int iter) {
+                Instance optimal = pt.getOptimal();
+                System.out.println(iter + " iterations, swap rate " + df.format(pt.getSwapRate())
+                        + "\n\ttraining Accuracy" + evaluator.evaluate(optimal, train).getAccuracy()
+                        + "\n\ttesting Accuracy" + evaluator.evaluate(optimal, test).getAccuracy());
+            }
+        }).train();
+        pt.shutdown();
+    }
+
+    /**
+     * Make a network optimization problem over the data, scoring with the forward pass the flags pick
+     */
+    private static AKNetworkOptimizationProblem problem(BackPropagationNetwork network) {
+        AKNetworkOptimizationProblem nnop = new AKNetworkOptimizationProblem(data, network);
+        nnop.setMatrixForward(matrixForward);
+        nnop.setFloatForward(floatForward);
+        return nnop;
+    }
+
+    /**
+     * The iterations between an accVsIterations trial's early stopping checks
+     */
+    private static int stallCheckInterval() {
+        if (stallCheckInterval > 0) {
+            return stallCheckInterval;
+        }
+        return batchSize > 0 ? Math.max(10, 10 * data.size() / batchSize) : 10;
+    }
+
+    private static AKMiniBatchSearch batched(AKMiniBatchSearch search) {
+        search.setVerify(verifyBatches);
+        return search;
+    }
+
+    /**
+     * Make the accVsIterations genetic algorithm for a problem in mini-batch mode. Each
+     * generation moves to the next batch and rescores the whole population on it first,
+     * so survivors are never compared on values from an older batch.
+     */
+    private static OptimizationAlgorithm batched(final AKNetworkOptimizationProblem nnop) {
+        final AKParallelGeneticAlgorithm ga = new AKParallelGeneticAlgorithm(250, (int) (0.05 * 250),
+                (int) (0.03 * 250), nnop, new AKPopulationEvaluator(nnop, 1));
+        return new OptimizationAlgorithm(nnop) {
+            public double train() {
+                nnop.nextBatch();
+                ga.rescore();
+                return ga.train();
+            }
+
+            public Instance getOptimal() {
+                return ga.getOptimal();
+            }
+        };
+    }
+
     private static double train(OptimizationAlgorithm oa, BackPropagationNetwork network, String oaName, int iter, int printFreq, boolean tAcc) {
         System.out.println("\nError results for " + oaName + "\n---------------------------");
-        double trainingAccuracy = 0, correct = 0, incorrect = 0;
+        double trainingAccuracy = 0;
 
         for(int i = 0; i < iter; i++) {
             oa.train();
@@ -309,88 +445,32 @@ public class AKNeuralNetTest {
         Instance optimalInstance = oa.getOptimal();
         network.setWeights(optimalInstance.getData());
 
-        Instance predicted;
-        Instance actual;
-
         if (tAcc) {
-            for (int j = 0; j < 15000; j++) {
-                network.setInputValues(instances[j].getData());
-                network.run();
-
-                predicted = instances[j].getLabel();
-                actual = new Instance(network.getOutputValues());
-
-                double trash = predicted.getData().argMax() == actual.getData().argMax() ? correct++ : incorrect++;
-            }
-
-            trainingAccuracy = ((float) correct / (correct + incorrect));
+            trainingAccuracy = AKNetworkEvaluator.evaluate(network, train).getAccuracy();
         }
 
         return trainingAccuracy;
 
     }
 
-    private static Instance[] initializeInstances() {
-
-        double[][][] attributes = new double[20000][][];
+    private static AKDataSet initializeData(String path) {
 
+        AKGymDataLoader.Table table;
         try {
-            BufferedReader br = new BufferedReader(new FileReader(new File("/Users/aayush/Dev/cs4641/Randomized Optimization/ABAGAIL/src/opt/test/filtered_gym_data.csv")));
-            br.readLine();
-
-            for (int i = 0; i < attributes.length; i++) {
-                Scanner scan = new Scanner(br.readLine());
-                scan.useDelimiter(",");
-
-                attributes[i] = new double[2][];
-                attributes[i][0] = new double[10]; // 10 attributes
-                attributes[i][1] = new double[1];
-
-                // y label (buckets of 20)
-                attributes[i][1][0] = Integer.parseInt(scan.next()) / 20;
-
-                // X vector (day of month)
-                attributes[i][0][attributes[i][0].length - 1] = Integer.parseInt(scan.next().substring(8,10));
-
-                //  X vector (others)
-                for(int j = 0; j < attributes[i][0].length - 1; j++) {
-                    attributes[i][0][j] = Double.parseDouble(scan.next());
-                }
-            }
+            table = new AKGymDataLoader(threads).load(path);
         }
-        catch(Exception e) {
+        catch(IOException e) {
             e.printStackTrace();
+            throw new RuntimeException(e);
         }
         System.out.println("Extracted Attrs");
 
-        Instance[] instances = new Instance[attributes.length];
-
-        for(int i = 0; i < instances.length; i++) {
-            instances[i] = new Instance(attributes[i][0]);
-            int c = (int) attributes[i][1][0];
-            double[] classes = new double[8]; // 8 classes
-            classes[c] = 1.0;
-            instances[i].setLabel(new Instance(classes));
-        }
-
-        // shuffle and filter
-        int index;
-        Random random = new Random();
-        Instance temp;
-
-        // shuffle
-        for (int i = instances.length - 1; i > 0; i--) {
-            index = random.nextInt(i + 1);
-            temp = instances[index];
-            instances[index] = instances[i];
-            instances[i] = temp;
-        }
-
-        // filter
-        instances = Arrays.copyOfRange(instances, 0, 20000);
+        // 8 classes, shuffle and filter
+        AKDataSet all = new AKDataSet(table.getFeatures(), table.getLabels(), AKGymDataLoader.FEATURES, 8);
+        AKDataSet data = all.view(0, Math.min(all.size(), 20000)).shuffle(new Random());
         System.out.println("Processed Data into Instances");
 
-        return instances;
+        return data;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,270 @@
+package opt.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import func.nn.Link;
+import func.nn.backprop.BackPropagationNetwork;
+import func.nn.backprop.BackPropagationNetworkFactory;
+import func.nn.backprop.BatchBackPropagationTrainer;
+import func.nn.backprop.RPROPUpdateRule;
+import shared.DataSet;
+import shared.SumOfSquaresError;
+import shared.Trainer;
+import util.linalg.DenseVector;
+
+/**
+ * Batch backpropagation with RPROP updates, the training
+ * BatchBackPropagationTrainer with an RPROPUpdateRule does, with the batch
+ * split across threads. The rows are cut into a shard per thread, and each
+ * shard runs forward and back through its own AKMatrixNetwork into its own
+ * gradient buffer. The shards' gradients and errors are then summed pairwise
+ * in a tree, a level at a time on the pool, and one RPROP step is taken on
+ * the total. The weights are held in one array every shard's network reads
+ * in place.
+ *
+ * The shards are fixed by the number of threads, not by how the pool runs
+ * them, so a run is repeatable. With one thread the rows are summed in order;
+ * with more, only the order of the sums differs, so the weights agree with
+ * the single thread run up to rounding.
+ *
+ * The step sizes start at 0.1, grow by 1.2 while a weight's gradient keeps
+ * its sign and halve when it flips, within [1e-6, 50], and a weight whose
+ * gradient flipped is left alone for that step, the same schedule as
+ * RPROPUpdateRule. The network gets the new weights after each step.
+ * parity() trains a network both ways from the same weights, to check the
+ * trainer against BatchBackPropagationTrainer before relying on it.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKParallelBackPropTrainer implements Trainer {
+    /** The step size every weight starts with */
+    private static final double INITIAL_STEP = .1;
+    /** The largest step size */
+    private static final double MAX_STEP = 50;
+    /** The smallest step size */
+    private static final double MIN_STEP = 1e-6;
+    /** The step size growth while the gradient keeps its sign */
+    private static final double INCREASE = 1.2;
+    /** The step size cut when the gradient changes sign */
+    private static final double DECREASE = .5;
+    /** The rows the forward pass is checked against the network on */
+    private static final int PARITY_ROWS = 500;
+    /** The largest output difference from the network the forward pass may have */
+    private static final double PARITY_TOLERANCE = 1e-9;
+
+    /** The training rows */
+    private final AKDataSet examples;
+    /** The network being trained */
+    private final BackPropagationNetwork network;
+    /** The weights, in the order of the network's links */
+    private final double[] weights;
+    /** The network of each shard */
+    private final AKMatrixNetwork[] shards;
+    /** The gradient of each shard, the first holding the total after the reduction */
+    private final double[][] gradients;
+    /** The error of each shard, the first holding the total after the reduction */
+    private final double[] errors;
+    /** The step size of each weight */
+    private final double[] steps;
+    /** The gradient of each weight at the last step, 0 after a sign change */
+    private final double[] lastGradient;
+    /** The pool the shards run on */
+    private final AKWorkerPool pool;
+
+    /**
+     * Make a new trainer starting from the network's current weights
+     * @param examples the training rows
+     * @param network the network to train
+     * @param threads the number of shards and threads
+     * @throws IllegalStateException if the matrix forward pass doesn't match the network
+     */
+    public AKParallelBackPropTrainer(AKDataSet examples, BackPropagationNetwork network, int threads) {
+        this.examples = examples;
+        this.network = network;
+        int count = Math.max(1, Math.min(threads, examples.size()));
+        AKNetworkLayout layout = new AKNetworkLayout(network);
+        shards = new AKMatrixNetwork[count];
+        for (int s = 0; s < count; s++) {
+            shards[s] = new AKMatrixNetwork(layout);
+        }
+        double difference = shards[0].maxDifference(network, examples.view(0, Math.min(examples.size(), PARITY_ROWS)));
+        if (difference > PARITY_TOLERANCE) {
+            throw new IllegalStateException("the matrix forward pass is off the network by up to " + difference);
+        }
+
+        List<?> links = network.getLinks();
+        weights = new double[links.size()];
+        for (int k = 0; k < weights.length; k++) {
+            weights[k] = ((Link) links.get(k)).getWeight();
+        }
+        gradients = new double[count][weights.length];
+        errors = new double[count];
+        steps = new double[weights.length];
+        Arrays.fill(steps, INITIAL_STEP);
+        lastGradient = new double[weights.length];
+        pool = new AKWorkerPool(count);
+    }
+
+    /**
+     * Take one batch step over every row
+     * @return the mean error per row before the step
+     * @see shared.Trainer#train()
+     */
+    public double train() {
+        final int count = shards.length;
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(count);
+        for (int s = 0; s < count; s++) {
+            final int shard = s;
+            final int from = (int) ((long) examples.size() * s / count);
+            final int to = (int) ((long) examples.size() * (s + 1) / count);
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    Arrays.fill(gradients[shard], 0);
+                    shards[shard].setWeights(weights);
+                    errors[shard] = shards[shard].gradient(examples, from, to, gradients[shard]);
+                    return null;
+                }
+            });
+        }
+        pool.invokeAll(tasks);
+
+        // pairwise sums, log2(shards) levels, each level's pairs at once
+        for (int stride = 1; stride < count; stride *= 2) {
+            tasks = new ArrayList<Callable<Void>>();
+            for (int s = 0; s + stride < count; s += 2 * stride) {
+                final int a = s, b = s + stride;
+                tasks.add(new Callable<Void>() {
+                    public Void call() {
+                        double[] into = gradients[a], from = gradients[b];
+                        for (int k = 0; k < into.length; k++) {
+                            into[k] += from[k];
+                        }
+                        errors[a] += errors[b];
+                        return null;
+                    }
+                });
+            }
+            pool.invokeAll(tasks);
+        }
+
+        update(gradients[0]);
+        network.setWeights(new DenseVector(weights.clone()));
+        return errors[0] / examples.size();
+    }
+
+    /**
+     * Take an RPROP step, leaving alone the weights whose gradient changed sign
+     */
+    private void update(double[] gradient) {
+        for (int k = 0; k < weights.length; k++) {
+            double g = gradient[k];
+            double change = g * lastGradient[k];
+            if (change > 0) {
+                steps[k] = Math.min(steps[k] * INCREASE, MAX_STEP);
+                weights[k] -= Math.signum(g) * steps[k];
+                lastGradient[k] = g;
+            } else if (change < 0) {
+                steps[k] = Math.max(steps[k] * DECREASE, MIN_STEP);
+                lastGradient[k] = 0;
+            } else {
+                weights[k] -= Math.signum(g) * steps[k];
+                lastGradient[k] = g;
+            }
+        }
+    }
+
+    /**
+     * Get the weights as trained so far
+     * @return a copy of the weights, in the order of the network's links
+     */
+    public double[] getWeights() {
+        return weights.clone();
+    }
+
+    /**
+     * Train two copies of a classification network from the same weights for
+     * some epochs, one with BatchBackPropagationTrainer and an RPROPUpdateRule
+     * and one with this trainer, and compare them
+     * @param examples the training rows
+     * @param layers the layer sizes of the network
+     * @param epochs the epochs to train
+     * @param threads the number of threads for this trainer
+     * @return how far apart the two networks ended up
+     */
+    public static Parity parity(AKDataSet examples, int[] layers, int epochs, int threads) {
+        BackPropagationNetworkFactory factory = new BackPropagationNetworkFactory();
+        BackPropagationNetwork reference = factory.createClassificationNetwork(layers);
+        BackPropagationNetwork network = factory.createClassificationNetwork(layers);
+        List<?> from = reference.getLinks(), to = network.getLinks();
+        for (int k = 0; k < from.size(); k++) {
+            ((Link) to.get(k)).setWeight(((Link) from.get(k)).getWeight());
+        }
+
+        Trainer sequential = new BatchBackPropagationTrainer(new DataSet(examples.toInstances()), reference,
+                new SumOfSquaresError(), new RPROPUpdateRule());
+        AKParallelBackPropTrainer parallel = new AKParallelBackPropTrainer(examples, network, threads);
+        for (int i = 0; i < epochs; i++) {
+            sequential.train();
+            parallel.train();
+        }
+        parallel.shutdown();
+
+        Parity parity = new Parity();
+        for (int k = 0; k < from.size(); k++) {
+            double difference = Math.abs(((Link) to.get(k)).getWeight() - ((Link) from.get(k)).getWeight());
+            parity.maxWeightDifference = Math.max(parity.maxWeightDifference, difference);
+        }
+        parity.referenceError = AKNetworkOptimizationProblem.error(reference, examples);
+        parity.error = AKNetworkOptimizationProblem.error(network, examples);
+        return parity;
+    }
+
+    /**
+     * Stop the worker threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * How far this trainer ended up from BatchBackPropagationTrainer
+     */
+    public static class Parity {
+        /** The largest difference in any weight */
+        private double maxWeightDifference;
+        /** The sum of squares error of the network this trainer trained */
+        private double error;
+        /** The sum of squares error of the network BatchBackPropagationTrainer trained */
+        private double referenceError;
+
+        public double getMaxWeightDifference() {
+            return maxWeightDifference;
+        }
+
+        public double getError() {
+            return error;
+        }
+
+        public double getReferenceError() {
+            return referenceError;
+        }
+
+        /**
+         * Get whether the two networks agree
+         * @param tolerance the largest weight difference allowed, also the relative error difference allowed
+         * @return true if they agree within the tolerance
+         */
+        public boolean matches(double tolerance) {
+            return maxWeightDifference <= tolerance
+                    && Math.abs(error - referenceError) <= tolerance * Math.max(1, Math.abs(referenceError));
+        }
+
+        public String toString() {
+            return "max weight difference " + maxWeightDifference + ", error " + error + " vs " + referenceError;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package opt.test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import dist.AbstractDistribution;
+import dist.Distribution;
+import shared.DataSet;
+import shared.Instance;
+
+/**
+ * The dependency tree distribution MIMIC fits, DiscreteDependencyTree, with
+ * the work of a refit spread over a worker pool. The mutual information of
+ * every pair of variables is counted with the pairs cut into one contiguous
+ * block per worker, each worker filling its own joint count table, so no
+ * counts are shared and no merge is needed. The maximum spanning tree is grown
+ * with Prim's algorithm; on trees large enough to repay a hand-off per vertex
+ * the key updates and the search for the next vertex are split into blocks of
+ * variables. The conditional tables are filled a block of variables per worker.
+ *
+ * sample(int) draws a batch on the pool, each sample from its own generator
+ * seeded from Distribution.random on the calling thread. Ties in the tree
+ * always go to the lower index, so for a fixed seed the fit and the samples
+ * are the same whatever the number of threads.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKParallelDependencyTree extends AbstractDistribution implements AKCheckpointable {
+    /** The smallest number of pairs worth giving to their own thread */
+    private static final int MIN_PAIRS = 256;
+    /** The smallest number of variables worth giving to their own thread */
+    private static final int MIN_VARIABLES = 64;
+    /** The smallest block of variables worth its own thread in Prim's algorithm, which waits on every block once per vertex */
+    private static final int MIN_TREE_VARIABLES = 2048;
+    /** The smallest number of samples worth giving to their own thread */
+    private static final int MIN_SAMPLES = 8;
+
+    /** The smoothing prior added to every count */
+    private final double m;
+    /** The range of each variable, or null to take them from the data */
+    private final int[] fixedRanges;
+    /** The pool the fit and the sampling run on */
+    private final AKWorkerPool pool;
+    /** The range of each variable in the current fit */
+    private int[] ranges;
+    /** The parent of each variable, -1 for the root */
+    private int[] parents;
+    /** The variables in an order where every parent comes before its children */
+    private int[] order;
+    /** The probability of each value of each variable given its parent's value, row major by parent value */
+    private double[][] conditionals;
+
+    /**
+     * Make a new dependency tree
+     * @param m the smoothing prior
+     * @param ranges the number of values each variable can take
+     * @param threads the number of threads
+     */
+    public AKParallelDependencyTree(double m, int[] ranges, int threads) {
+        this.m = m;
+        this.fixedRanges = ranges;
+        this.pool = new AKWorkerPool(threads);
+    }
+
+    /**
+     * Make a new dependency tree that takes each variable's range from the data
+     * @param m the smoothing prior
+     * @param threads the number of threads
+     */
+    public AKParallelDependencyTree(double m, int threads) {
+        this(m, null, threads);
+    }
+
+    /**
+     * Fit the tree to a data set
+     * @see dist.Distribution#estimate(shared.DataSet)
+     */
+    public void estimate(DataSet observations) {
+        final int s = observations.size();
+        final int n = observations.get(0).size();
+        final int[][] values = new int[s][n];
+        final double[] weights = new double[s];
+        double total = 0;
+        for (int k = 0; k < s; k++) {
+            Instance d = observations.get(k);
+            for (int i = 0; i < n; i++) {
+                values[k][i] = d.getDiscrete(i);
+            }
+            weights[k] = d.getWeight();
+            total += weights[k];
+        }
+        if (fixedRanges != null) {
+            ranges = fixedRanges;
+        } else {
+            ranges = new int[n];
+            for (int k = 0; k < s; k++) {
+                for (int i = 0; i < n; i++) {
+                    ranges[i] = Math.max(ranges[i], values[k][i] + 1);
+                }
+            }
+        }
+        double[][] information = mutualInformation(values, weights, total, n);
+        spanningTree(information, n);
+        fitConditionals(values, weights, total, n);
+    }
+
+    /**
+     * Count the mutual information of every pair of variables, a block of pairs per worker
+     */
+    private double[][] mutualInformation(final int[][] values, final double[] weights, final double total,
+            final int n) {
+        final double[][] information = new double[n][n];
+        int maxRange = 0;
+        for (int i = 0; i < n; i++) {
+            maxRange = Math.max(maxRange, ranges[i]);
+        }
+        final int tableSize = maxRange * maxRange;
+        int pairs = (int) Math.min(Integer.MAX_VALUE, (long) n * (n - 1) / 2);
+        pool.forRange(pairs, MIN_PAIRS, new AKWorkerPool.RangeBody() {
+            public void run(int from, int to) {
+                double[] joint = new double[tableSize];
+                // find the pair at index from, pairs running (0, 1), (0, 2), ..., (1, 2), ...
+                int i = 0, p = from;
+                while (p >= n - 1 - i) {
+                    p -= n - 1 - i;
+                    i++;
+                }
+                int j = i + 1 + p;
+                for (int pair = from; pair < to; pair++) {
+                    information[i][j] = information[j][i] = pairInformation(values, weights, total, i, j, joint);
+                    if (++j == n) {
+                        i++;
+                        j = i + 1;
+                    }
+                }
+            }
+        });
+        return information;
+    }
+
+    /**
+     * The mutual information of two variables under the smoothed joint distribution
+     */
+    private double pairInformation(int[][] values, double[] weights, double total, int i, int j, double[] joint) {
+        int ri = ranges[i], rj = ranges[j];
+        Arrays.fill(joint, 0, ri * rj, m);
+        for (int k = 0; k < values.length; k++) {
+            joint[values[k][i] * rj + values[k][j]] += weights[k];
+        }
+        double norm = total + m * ri * rj;
+        double[] pi = new double[ri], pj = new double[rj];
+        for (int a = 0; a < ri; a++) {
+            for (int b = 0; b < rj; b++) {
+                double p = joint[a * rj + b] / norm;
+                pi[a] += p;
+                pj[b] += p;
+            }
+        }
+        double information = 0;
+        for (int a = 0; a < ri; a++) {
+            for (int b = 0; b < rj; b++) {
+                double p = joint[a * rj + b] / norm;
+                information += p * Math.log(p / (pi[a] * pj[b]));
+            }
+        }
+        return information;
+    }
+
+    /**
+     * Grow the maximum spanning tree from variable 0 with Prim's algorithm
+     */
+    private void spanningTree(final double[][] information, final int n) {
+        parents = new int[n];
+        order = new int[n];
+        final double[] keys = new double[n];
+        final boolean[] inTree = new boolean[n];
+        Arrays.fill(keys, Double.NEGATIVE_INFINITY);
+        Arrays.fill(parents, -1);
+        final int[] added = new int[1];
+
+        // one task per block of variables, each relaxing its block against the vertex just added
+        int chunks = Math.max(1, Math.min(pool.getThreads(), n / MIN_TREE_VARIABLES));
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int from = (int) ((long) n * c / chunks);
+            final int to = (int) ((long) n * (c + 1) / chunks);
+            tasks.add(new Callable<Integer>() {
+                public Integer call() {
+                    int u = added[0], best = -1;
+                    for (int v = from; v < to; v++) {
+                        if (inTree[v]) {
+                            continue;
+                        }
+                        if (information[u][v] > keys[v]) {
+                            keys[v] = information[u][v];
+                            parents[v] = u;
+                        }
+                        if (best < 0 || keys[v] > keys[best]) {
+                            best = v;
+                        }
+                    }
+                    return best;
+                }
+            });
+        }
+
+        inTree[0] = true;
+        order[0] = 0;
+        for (int step = 1; step < n; step++) {
+            int next = -1;
+            for (int best : pool.invokeAll(tasks)) {
+                // blocks come back in index order, so a strict comparison keeps the lower index
+                if (best >= 0 && (next < 0 || keys[best] > keys[next])) {
+                    next = best;
+                }
+            }
+            inTree[next] = true;
+            order[step] = next;
+            added[0] = next;
+        }
+    }
+
+    /**
+     * Fill the smoothed table of each variable given its parent, a block of variables per worker
+     */
+    private void fitConditionals(final int[][] values, final double[] weights, final double total, int n) {
+        conditionals = new double[n][];
+        pool.forRange(n, MIN_VARIABLES, new AKWorkerPool.RangeBody() {
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    int parent = parents[i], r = ranges[i];
+                    int rows = parent < 0 ? 1 : ranges[parent];
+                    double[] table = new double[rows * r];
+                    double[] rowTotals = new double[rows];
+                    Arrays.fill(table, m);
+                    Arrays.fill(rowTotals, m * r);
+                    for (int k = 0; k < values.length; k++) {
+                        int row = parent < 0 ? 0 : values[k][parent];
+                        table[row * r + values[k][i]] += weights[k];
+                        rowTotals[row] += weights[k];
+                    }
+                    for (int row = 0; row < rows; row++) {
+                        for (int a = 0; a < r; a++) {
+                            table[row * r + a] /= rowTotals[row];
+                        }
+                    }
+                    conditionals[i] = table;
+                }
+            }
+        });
+    }
+
+    /**
+     * Draw one sample from Distribution.random on the calling thread
+     * @see dist.Distribution#sample(shared.Instance)
+     */
+    public Instance sample(Instance ignored) {
+        return new Instance(draw(Distribution.random));
+    }
+
+    /**
+     * Draw a batch of samples on the pool
+     * @param count the number of samples
+     * @return the samples
+     */
+    public Instance[] sample(int count) {
+        final long[] seeds = new long[count];
+        for (int k = 0; k < count; k++) {
+            seeds[k] = Distribution.random.nextLong();
+        }
+        final Instance[] samples = new Instance[count];
+        pool.forRange(count, MIN_SAMPLES, new AKWorkerPool.RangeBody() {
+            public void run(int from, int to) {
+                for (int k = from; k < to; k++) {
+                    samples[k] = new Instance(draw(new Random(seeds[k])));
+                }
+            }
+        });
+        return samples;
+    }
+
+    /**
+     * Draw each variable given its parent's drawn value, walking down from the root
+     */
+    private double[] draw(Random random) {
+        double[] data = new double[order.length];
+        for (int step = 0; step < order.length; step++) {
+            int i = order[step], r = ranges[i];
+            int row = parents[i] < 0 ? 0 : (int) data[parents[i]];
+            double u = random.nextDouble(), sum = 0;
+            int value = r - 1;
+            for (int a = 0; a < r; a++) {
+                sum += conditionals[i][row * r + a];
+                if (u < sum) {
+                    value = a;
+                    break;
+                }
+            }
+            data[i] = value;
+        }
+        return data;
+    }
+
+    /**
+     * Take each variable's most likely value given its parent's, walking down from the root
+     * @see dist.Distribution#mode(shared.Instance)
+     */
+    public Instance mode(Instance ignored) {
+        double[] data = new double[order.length];
+        for (int step = 0; step < order.length; step++) {
+            int i = order[step], r = ranges[i];
+            int row = parents[i] < 0 ? 0 : (int) data[parents[i]];
+            int best = 0;
+            for (int a = 1; a < r; a++) {
+                if (conditionals[i][row * r + a] > conditionals[i][row * r + best]) {
+                    best = a;
+                }
+            }
+            data[i] = best;
+        }
+        return new Instance(data);
+    }
+
+    /**
+     * @see dist.Distribution#p(shared.Instance)
+     */
+    public double p(Instance d) {
+        double p = 1;
+        for (int i = 0; i < order.length; i++) {
+            int r = ranges[i];
+            int row = parents[i] < 0 ? 0 : d.getDiscrete(parents[i]);
+            p *= conditionals[i][row * r + d.getDiscrete(i)];
+        }
+        return p;
+    }
+
+    /**
+     * Write the fitted tree: the ranges, the parents, the order and the conditional tables
+     * @see opt.test.AKCheckpointable#writeState(java.io.DataOutputStream)
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+        AKCheckpoint.writeInts(out, ranges);
+        AKCheckpoint.writeInts(out, parents);
+        AKCheckpoint.writeInts(out, order);
+        for (double[] table : conditionals) {
+            AKCheckpoint.writeDoubles(out, table);
+        }
+    }
+
+    /**
+     * @see opt.test.AKCheckpointable#readState(java.io.DataInputStream)
+     */
+    public void readState(DataInputStream in) throws IOException {
+        ranges = AKCheckpoint.readInts(in);
+        parents = AKCheckpoint.readInts(in);
+        order = AKCheckpoint.readInts(in);
+        conditionals = new double[ranges.length][];
+        for (int i = 0; i < conditionals.length; i++) {
+            conditionals[i] = AKCheckpoint.readDoubles(in);
+        }
+    }
+
+    /**
+     * Stop the worker threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,219 @@
+package opt.test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import dist.Distribution;
+import opt.OptimizationAlgorithm;
+import opt.ga.GeneticAlgorithmProblem;
+import shared.Instance;
+
+/**
+ * The StandardGeneticAlgorithm generation loop with the fitness of new
+ * individuals scored on an AKPopulationEvaluator. Selection, crossover and
+ * mutation stay on the calling thread and draw from Distribution.random in
+ * the same order whatever the number of threads, so for a fixed seed the
+ * populations are the same as a single threaded run.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKParallelGeneticAlgorithm extends OptimizationAlgorithm implements AKCheckpointable {
+    /** The population size */
+    private final int populationSize;
+    /** The number of children made by crossover each generation */
+    private final int toMate;
+    /** The number of individuals mutated each generation */
+    private final int toMutate;
+    /** Scores new individuals */
+    private final AKPopulationEvaluator evaluator;
+    /** The population */
+    private Instance[] population;
+    /** The fitness of each individual */
+    private double[] values;
+
+    /**
+     * Make a new genetic algorithm
+     * @param populationSize the population size
+     * @param toMate the number of children made by crossover each generation
+     * @param toMutate the number of individuals mutated each generation
+     * @param gap the problem
+     * @param evaluator scores the population, with the problem's evaluation function
+     */
+    public AKParallelGeneticAlgorithm(int populationSize, int toMate, int toMutate,
+            GeneticAlgorithmProblem gap, AKPopulationEvaluator evaluator) {
+        super(gap);
+        this.populationSize = populationSize;
+        this.toMate = toMate;
+        this.toMutate = toMutate;
+        this.evaluator = evaluator;
+        population = new Instance[populationSize];
+        values = new double[populationSize];
+        for (int i = 0; i < populationSize; i++) {
+            population[i] = gap.random();
+        }
+        evaluator.evaluate(population, values);
+    }
+
+    /**
+     * Run one generation
+     * @see shared.Trainer#train()
+     */
+    public double train() {
+        GeneticAlgorithmProblem ga = (GeneticAlgorithmProblem) getOptimizationProblem();
+
+        // fitness proportional selection over the cumulative distribution
+        double[] cumulative = new double[populationSize];
+        double sum = 0;
+        for (int i = 0; i < populationSize; i++) {
+            sum += values[i];
+            cumulative[i] = sum;
+        }
+        if (Double.isInfinite(sum)) {
+            return sum;
+        }
+
+        // make the children
+        Instance[] newPopulation = new Instance[populationSize];
+        double[] newValues = new double[populationSize];
+        boolean[] stale = new boolean[populationSize];
+        for (int i = 0; i < toMate; i++) {
+            Instance a = population[select(cumulative, sum)];
+            Instance b = population[select(cumulative, sum)];
+            newPopulation[i] = ga.mate(a, b);
+            stale[i] = true;
+        }
+        // and the survivors
+        for (int i = toMate; i < populationSize; i++) {
+            int j = select(cumulative, sum);
+            newPopulation[i] = (Instance) population[j].copy();
+            newValues[i] = values[j];
+        }
+        // mutate
+        for (int i = 0; i < toMutate; i++) {
+            int j = Distribution.random.nextInt(populationSize);
+            ga.mutate(newPopulation[j]);
+            stale[j] = true;
+        }
+
+        evaluator.evaluate(newPopulation, newValues, stale);
+        population = newPopulation;
+        values = newValues;
+        return sum / populationSize;
+    }
+
+    /**
+     * Score the whole population again, for an evaluation function that has
+     * changed since, such as a mini-batch estimate moved to a new batch, so
+     * selection doesn't compare values from different batches
+     */
+    public void rescore() {
+        evaluator.evaluate(population, values);
+    }
+
+    /**
+     * Pick an individual with probability proportional to its fitness
+     */
+    private static int select(double[] cumulative, double sum) {
+        double r = Distribution.random.nextDouble() * sum;
+        int i = Arrays.binarySearch(cumulative, r);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return Math.min(i, cumulative.length - 1);
+    }
+
+    /**
+     * @see opt.OptimizationAlgorithm#getOptimal()
+     */
+    public Instance getOptimal() {
+        int best = 0;
+        for (int i = 1; i < populationSize; i++) {
+            if (values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return population[best];
+    }
+
+    /**
+     * Find the fittest individuals
+     * @param count the number to find
+     * @return their indices, fittest first, ties going to the lower index
+     */
+    public int[] best(int count) {
+        return rank(Math.min(count, populationSize), true);
+    }
+
+    /**
+     * Replace the least fit individuals with already scored newcomers
+     * @param newcomers the individuals to take in
+     * @param newcomerValues the fitness of each newcomer
+     */
+    public void immigrate(Instance[] newcomers, double[] newcomerValues) {
+        int[] worst = rank(Math.min(newcomers.length, populationSize), false);
+        for (int k = 0; k < worst.length; k++) {
+            population[worst[k]] = newcomers[k];
+            values[worst[k]] = newcomerValues[k];
+        }
+    }
+
+    /**
+     * The indices of the count fittest, or least fit, individuals by selection
+     */
+    private int[] rank(int count, boolean fittest) {
+        int[] picked = new int[count];
+        boolean[] taken = new boolean[populationSize];
+        for (int k = 0; k < count; k++) {
+            int pick = -1;
+            for (int i = 0; i < populationSize; i++) {
+                if (!taken[i] && (pick < 0 || (fittest ? values[i] > values[pick] : values[i] < values[pick]))) {
+                    pick = i;
+                }
+            }
+            taken[pick] = true;
+            picked[k] = pick;
+        }
+        return picked;
+    }
+
+    /**
+     * Write the population and its fitness
+     * @see opt.test.AKCheckpointable#writeState(java.io.DataOutputStream)
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+        AKCheckpoint.writeInstances(out, population);
+        AKCheckpoint.writeDoubles(out, values);
+    }
+
+    /**
+     * @see opt.test.AKCheckpointable#readState(java.io.DataInputStream)
+     */
+    public void readState(DataInputStream in) throws IOException {
+        Instance[] restored = AKCheckpoint.readInstances(in);
+        double[] restoredValues = AKCheckpoint.readDoubles(in);
+        if (restored.length != populationSize || restoredValues.length != populationSize) {
+            throw new IOException("checkpoint holds " + restored.length + " individuals, expected " + populationSize);
+        }
+        population = restored;
+        values = restoredValues;
+    }
+
+    /**
+     * Get the population
+     * @return the current population
+     */
+    public Instance[] getPopulation() {
+        return population;
+    }
+
+    /**
+     * Get the fitness of each individual
+     * @return the fitness values, indexed like the population
+     */
+    public double[] getValues() {
+        return values;
+    }
+}
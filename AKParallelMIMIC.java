@@ -0,0 +1,130 @@
+package opt.test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import dist.Distribution;
+import opt.OptimizationAlgorithm;
+import opt.prob.ProbabilisticOptimizationProblem;
+import shared.DataSet;
+import shared.Instance;
+
+/**
+ * The MIMIC loop with the fitness of each iteration's samples scored on an
+ * AKPopulationEvaluator. Samples are drawn on the calling thread, or as a
+ * seeded batch when the distribution is an AKParallelDependencyTree. The
+ * samples are kept by MIMIC's rule: the cutoff is the toKeep-th best value,
+ * and the first toKeep samples in draw order at or above it are kept, so ties
+ * at the cutoff go to the earlier samples. For the same samples the refit is
+ * the one MIMIC makes, and for a fixed seed the run is the same whatever the
+ * number of threads.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKParallelMIMIC extends OptimizationAlgorithm implements AKCheckpointable {
+    /** The number of samples drawn each iteration */
+    private final int samples;
+    /** The number of samples the distribution is refit to */
+    private final int toKeep;
+    /** The distribution being fit */
+    private final Distribution distribution;
+    /** Scores the samples */
+    private final AKPopulationEvaluator evaluator;
+    /** The samples the distribution was last fit to */
+    private Instance[] kept;
+
+    /**
+     * Make a new MIMIC
+     * @param samples the number of samples drawn each iteration
+     * @param toKeep the number of samples the distribution is refit to
+     * @param pop the problem
+     * @param evaluator scores the samples, with the problem's evaluation function
+     */
+    public AKParallelMIMIC(int samples, int toKeep, ProbabilisticOptimizationProblem pop,
+            AKPopulationEvaluator evaluator) {
+        super(pop);
+        this.samples = samples;
+        this.toKeep = toKeep;
+        this.evaluator = evaluator;
+        this.distribution = pop.getDistribution();
+        // the first fit is to a full draw of random samples, as MIMIC does
+        kept = new Instance[samples];
+        for (int i = 0; i < samples; i++) {
+            kept[i] = pop.random();
+        }
+        distribution.estimate(new DataSet(kept));
+    }
+
+    /**
+     * Draw, score and refit once
+     * @return the cutoff, the fitness of the worst kept sample
+     * @see shared.Trainer#train()
+     */
+    public double train() {
+        Instance[] data;
+        if (distribution instanceof AKParallelDependencyTree) {
+            data = ((AKParallelDependencyTree) distribution).sample(samples);
+        } else {
+            data = new Instance[samples];
+            for (int i = 0; i < samples; i++) {
+                data[i] = distribution.sample(null);
+            }
+        }
+        double[] values = new double[samples];
+        evaluator.evaluate(data, values);
+
+        // the order statistic MIMIC takes by randomized select, without drawing from a generator
+        kept = new Instance[Math.min(toKeep, samples)];
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double cutoff = sorted[samples - kept.length];
+        for (int i = 0, j = 0; i < samples && j < kept.length; i++) {
+            if (values[i] >= cutoff) {
+                kept[j++] = data[i];
+            }
+        }
+        distribution.estimate(new DataSet(kept));
+        return cutoff;
+    }
+
+    /**
+     * Write the fitted distribution, or the samples it was fit to when it
+     * can't be written itself
+     * @see opt.test.AKCheckpointable#writeState(java.io.DataOutputStream)
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+        boolean fitted = distribution instanceof AKCheckpointable;
+        out.writeBoolean(fitted);
+        if (fitted) {
+            ((AKCheckpointable) distribution).writeState(out);
+        }
+        AKCheckpoint.writeInstances(out, kept);
+    }
+
+    /**
+     * @see opt.test.AKCheckpointable#readState(java.io.DataInputStream)
+     */
+    public void readState(DataInputStream in) throws IOException {
+        boolean fitted = in.readBoolean();
+        if (fitted != distribution instanceof AKCheckpointable) {
+            throw new IOException("checkpoint was written with a different distribution");
+        }
+        if (fitted) {
+            ((AKCheckpointable) distribution).readState(in);
+        }
+        kept = AKCheckpoint.readInstances(in);
+        if (!fitted) {
+            distribution.estimate(new DataSet(kept));
+        }
+    }
+
+    /**
+     * @see opt.OptimizationAlgorithm#getOptimal()
+     */
+    public Instance getOptimal() {
+        return distribution.mode(null);
+    }
+}
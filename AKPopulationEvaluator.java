@@ -0,0 +1,110 @@
+package opt.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import opt.EvaluationFunction;
+import shared.Instance;
+
+/**
+ * Scores a population of instances on a worker pool. The population is cut
+ * into one contiguous chunk per worker and chunk c is always scored by
+ * evaluation function c, so evaluation functions that keep state (a network,
+ * a conflict flag) are safe as long as each worker gets its own copy.
+ * Scoring draws no random numbers, so the values are the same whatever the
+ * number of threads.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKPopulationEvaluator {
+    /** The smallest chunk worth giving to its own thread */
+    private static final int MIN_CHUNK = 4;
+
+    /** The pool the chunks run on */
+    private final AKWorkerPool pool;
+    /** One evaluation function per worker */
+    private final EvaluationFunction[] functions;
+
+    /**
+     * Make an evaluator for a thread safe evaluation function, which all workers share
+     * @param ef the evaluation function
+     * @param threads the number of threads
+     */
+    public AKPopulationEvaluator(EvaluationFunction ef, int threads) {
+        this.pool = new AKWorkerPool(threads);
+        this.functions = new EvaluationFunction[threads];
+        for (int i = 0; i < threads; i++) {
+            functions[i] = ef;
+        }
+    }
+
+    /**
+     * Make an evaluator that gives every worker its own evaluation function
+     * @param factory makes the evaluation functions
+     * @param threads the number of threads
+     */
+    public AKPopulationEvaluator(Factory factory, int threads) {
+        this.pool = new AKWorkerPool(threads);
+        this.functions = new EvaluationFunction[threads];
+        for (int i = 0; i < threads; i++) {
+            functions[i] = factory.create();
+        }
+    }
+
+    /**
+     * Score every instance
+     * @param instances the instances
+     * @param values filled in with the score of each instance
+     */
+    public void evaluate(Instance[] instances, double[] values) {
+        evaluate(instances, values, null);
+    }
+
+    /**
+     * Score the instances that need it
+     * @param instances the instances
+     * @param values filled in with the score of each instance that is scored
+     * @param stale which instances to score, or null for all of them
+     */
+    public void evaluate(final Instance[] instances, final double[] values, final boolean[] stale) {
+        int n = instances.length;
+        int chunks = Math.max(1, Math.min(functions.length, n / MIN_CHUNK));
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final EvaluationFunction ef = functions[c];
+            final int from = (int) ((long) n * c / chunks);
+            final int to = (int) ((long) n * (c + 1) / chunks);
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    for (int i = from; i < to; i++) {
+                        if (stale == null || stale[i]) {
+                            values[i] = ef.value(instances[i]);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        pool.invokeAll(tasks);
+    }
+
+    /**
+     * Stop the worker threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Makes one evaluation function per worker
+     */
+    public interface Factory {
+        /**
+         * Make an evaluation function for a worker's sole use
+         * @return the evaluation function
+         */
+        EvaluationFunction create();
+    }
+}
@@ -0,0 +1,176 @@
+package opt.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import dist.Distribution;
+import opt.EvaluationFunction;
+import opt.HillClimbingProblem;
+import opt.OptimizationAlgorithm;
+import shared.Instance;
+
+/**
+ * Parallel tempering. A ladder of annealing chains, each an AKDeltaSearch
+ * held at a fixed temperature spaced geometrically between the coldest and
+ * the hottest, runs a sweep of steps per call to train(), one chain per
+ * thread. Between sweeps, neighboring chains on the ladder offer to trade
+ * points, chain i and j swapping with probability
+ * min(1, exp((f_j - f_i)(1 / T_i - 1 / T_j))), the even pairs on one call and
+ * the odd pairs on the next. Good points found by the hot chains drift down to
+ * the cold ones, so one run covers the range of starting temperatures a grid
+ * search would try.
+ *
+ * The swaps draw from Distribution.random on the calling thread, but the
+ * chains draw from it as their threads reach it, so a run is not repeatable
+ * for a fixed seed.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKReplicaExchangeAnnealing extends OptimizationAlgorithm {
+    /** The chains, coldest first */
+    private final AKDeltaSearch[] chains;
+    /** The temperature of each chain */
+    private final double[] temperatures;
+    /** The steps each chain takes per call to train() */
+    private final int sweep;
+    /** Runs the chains */
+    private final AKWorkerPool pool;
+    /** The best point each chain has ended a sweep on */
+    private final Instance[] best;
+    /** The value of each chain's best point */
+    private final double[] bestValues;
+    /** Whether the next swaps pair chains 0-1, 2-3, ... rather than 1-2, 3-4, ... */
+    private boolean even = true;
+    /** The swaps offered and taken so far */
+    private int offered, taken;
+
+    /**
+     * Make a new replica exchange annealer for a thread safe evaluation function
+     * @param tMin the temperature of the coldest chain
+     * @param tMax the temperature of the hottest chain
+     * @param replicas the number of chains, each run on its own thread
+     * @param sweep the steps each chain takes per call to train()
+     * @param hcp the problem, whose evaluation function the chains share
+     * @param ef the problem's evaluation function
+     * @param moves the move generator, or null to use the problem's neighbors
+     */
+    public AKReplicaExchangeAnnealing(double tMin, double tMax, int replicas, int sweep, HillClimbingProblem hcp,
+            final EvaluationFunction ef, AKMoveGenerator moves) {
+        this(tMin, tMax, replicas, sweep, hcp, new AKPopulationEvaluator.Factory() {
+            public EvaluationFunction create() {
+                return ef;
+            }
+        }, moves);
+    }
+
+    /**
+     * Make a new replica exchange annealer that gives every chain its own evaluation function
+     * @param tMin the temperature of the coldest chain
+     * @param tMax the temperature of the hottest chain
+     * @param replicas the number of chains, each run on its own thread
+     * @param sweep the steps each chain takes per call to train()
+     * @param hcp the problem
+     * @param factory makes an evaluation function, equivalent to the problem's, for each chain
+     * @param moves the move generator, or null to use the problem's neighbors
+     */
+    public AKReplicaExchangeAnnealing(double tMin, double tMax, int replicas, int sweep, HillClimbingProblem hcp,
+            AKPopulationEvaluator.Factory factory, AKMoveGenerator moves) {
+        super(hcp);
+        this.sweep = sweep;
+        this.pool = new AKWorkerPool(replicas);
+        this.chains = new AKDeltaSearch[replicas];
+        this.temperatures = new double[replicas];
+        this.best = new Instance[replicas];
+        this.bestValues = new double[replicas];
+        for (int k = 0; k < replicas; k++) {
+            temperatures[k] = replicas == 1 ? tMin : tMin * Math.pow(tMax / tMin, (double) k / (replicas - 1));
+            chains[k] = new AKDeltaSearch(temperatures[k], 1, hcp, factory.create(), moves);
+            best[k] = (Instance) chains[k].getOptimal().copy();
+            bestValues[k] = chains[k].getValue();
+        }
+    }
+
+    /**
+     * Run a sweep on every chain, then offer swaps between neighbors on the ladder
+     * @return the best value found so far
+     * @see shared.Trainer#train()
+     */
+    public double train() {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chains.length);
+        for (int k = 0; k < chains.length; k++) {
+            final int chain = k;
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    AKDeltaSearch search = chains[chain];
+                    for (int i = 0; i < sweep; i++) {
+                        search.train();
+                    }
+                    if (search.getValue() > bestValues[chain]) {
+                        best[chain] = (Instance) search.getOptimal().copy();
+                        bestValues[chain] = search.getValue();
+                    }
+                    return null;
+                }
+            });
+        }
+        pool.invokeAll(tasks);
+
+        for (int i = even ? 0 : 1; i + 1 < chains.length; i += 2) {
+            int j = i + 1;
+            double fi = chains[i].getValue(), fj = chains[j].getValue();
+            double exponent = (fj - fi) * (1 / temperatures[i] - 1 / temperatures[j]);
+            offered++;
+            if (exponent >= 0 || Distribution.random.nextDouble() < Math.exp(exponent)) {
+                Instance point = chains[i].getOptimal();
+                chains[i].setCurrent(chains[j].getOptimal(), fj);
+                chains[j].setCurrent(point, fi);
+                taken++;
+            }
+        }
+        even = !even;
+        return bestValues[bestChain()];
+    }
+
+    private int bestChain() {
+        int b = 0;
+        for (int k = 1; k < chains.length; k++) {
+            if (bestValues[k] > bestValues[b]) {
+                b = k;
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Get the best point any chain has ended a sweep on
+     * @see opt.OptimizationAlgorithm#getOptimal()
+     */
+    public Instance getOptimal() {
+        return best[bestChain()];
+    }
+
+    /**
+     * Get the temperature ladder
+     * @return the temperature of each chain, coldest first
+     */
+    public double[] getTemperatures() {
+        return temperatures;
+    }
+
+    /**
+     * Get the fraction of offered swaps that were taken, a check on the ladder's spacing
+     * @return the acceptance rate, 0 before any swap is offered
+     */
+    public double getSwapRate() {
+        return offered == 0 ? 0 : (double) taken / offered;
+    }
+
+    /**
+     * Stop the chain threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
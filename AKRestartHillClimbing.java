@@ -0,0 +1,208 @@
+package opt.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import opt.EvaluationFunction;
+import opt.HillClimbingProblem;
+import opt.OptimizationAlgorithm;
+import shared.Instance;
+
+/**
+ * A portfolio of randomized hill climbers run at once, one per thread, each an
+ * AKDeltaSearch with its own evaluation function. A climber that goes a set
+ * number of steps without improving starts again from a random point. The best
+ * point any climber has reached is kept as a shared incumbent, replaced by
+ * compare and set so the climbers never lock, and once it reaches the target
+ * every climber stops at its next step.
+ *
+ * The climbers draw from Distribution.random as their threads reach it, so a
+ * run is not repeatable for a fixed seed.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKRestartHillClimbing extends OptimizationAlgorithm {
+    /** The climbers */
+    private final AKDeltaSearch[] climbers;
+    /** The evaluation function of each climber */
+    private final EvaluationFunction[] functions;
+    /** The steps each climber takes per call to train() */
+    private final int round;
+    /** The steps without improvement before a climber restarts */
+    private final int patience;
+    /** Runs the climbers */
+    private final AKWorkerPool pool;
+    /** The best point found so far */
+    private final AtomicReference<Incumbent> incumbent = new AtomicReference<Incumbent>();
+    /** The restarts made so far */
+    private final AtomicInteger restarts = new AtomicInteger();
+    /** The best value of each climber since it last started */
+    private final double[] climbBest;
+    /** The steps since each climber last improved */
+    private final int[] stalled;
+    /** The value to stop at */
+    private volatile double target = Double.POSITIVE_INFINITY;
+
+    /**
+     * Make a new portfolio for a thread safe evaluation function
+     * @param climbers the number of climbers, each run on its own thread
+     * @param round the steps each climber takes per call to train()
+     * @param patience the steps without improvement before a climber restarts
+     * @param hcp the problem
+     * @param ef the problem's evaluation function, shared by the climbers
+     * @param moves the move generator, or null to use the problem's neighbors
+     */
+    public AKRestartHillClimbing(int climbers, int round, int patience, HillClimbingProblem hcp,
+            final EvaluationFunction ef, AKMoveGenerator moves) {
+        this(climbers, round, patience, hcp, new AKPopulationEvaluator.Factory() {
+            public EvaluationFunction create() {
+                return ef;
+            }
+        }, moves);
+    }
+
+    /**
+     * Make a new portfolio that gives every climber its own evaluation function
+     * @param climbers the number of climbers, each run on its own thread
+     * @param round the steps each climber takes per call to train()
+     * @param patience the steps without improvement before a climber restarts
+     * @param hcp the problem
+     * @param factory makes an evaluation function, equivalent to the problem's, for each climber
+     * @param moves the move generator, or null to use the problem's neighbors
+     */
+    public AKRestartHillClimbing(int climbers, int round, int patience, HillClimbingProblem hcp,
+            AKPopulationEvaluator.Factory factory, AKMoveGenerator moves) {
+        super(hcp);
+        this.round = round;
+        this.patience = patience;
+        this.pool = new AKWorkerPool(climbers);
+        this.climbers = new AKDeltaSearch[climbers];
+        this.functions = new EvaluationFunction[climbers];
+        this.climbBest = new double[climbers];
+        this.stalled = new int[climbers];
+        for (int k = 0; k < climbers; k++) {
+            functions[k] = factory.create();
+            this.climbers[k] = new AKDeltaSearch(hcp, functions[k], moves);
+            climbBest[k] = this.climbers[k].getValue();
+            offer(this.climbers[k]);
+        }
+    }
+
+    /**
+     * Stop every climber once the incumbent reaches a value
+     * @param target the value to stop at
+     */
+    public void setTarget(double target) {
+        this.target = target;
+    }
+
+    /**
+     * Whether the incumbent has reached the target
+     * @return true if the search is done
+     */
+    public boolean reachedTarget() {
+        return incumbent.get().value >= target;
+    }
+
+    /**
+     * Run a round of steps on every climber, or until the target is reached
+     * @return the value of the incumbent
+     * @see shared.Trainer#train()
+     */
+    public double train() {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(climbers.length);
+        for (int k = 0; k < climbers.length; k++) {
+            final int climber = k;
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    climb(climber);
+                    return null;
+                }
+            });
+        }
+        pool.invokeAll(tasks);
+        return incumbent.get().value;
+    }
+
+    /**
+     * Take a round of steps on one climber
+     */
+    private void climb(int k) {
+        HillClimbingProblem hcp = (HillClimbingProblem) getOptimizationProblem();
+        AKDeltaSearch climber = climbers[k];
+        for (int i = 0; i < round && !reachedTarget(); i++) {
+            double value = climber.train();
+            if (value > climbBest[k]) {
+                climbBest[k] = value;
+                stalled[k] = 0;
+                offer(climber);
+            } else if (++stalled[k] >= patience) {
+                Instance start = hcp.random();
+                climber.setCurrent(start, functions[k].value(start));
+                climbBest[k] = climber.getValue();
+                stalled[k] = 0;
+                restarts.incrementAndGet();
+                offer(climber);
+            }
+        }
+    }
+
+    /**
+     * Make a climber's current point the incumbent if it is better
+     */
+    private void offer(AKDeltaSearch climber) {
+        double value = climber.getValue();
+        Incumbent current = incumbent.get();
+        if (current != null && value <= current.value) {
+            return;
+        }
+        Incumbent better = new Incumbent((Instance) climber.getOptimal().copy(), value);
+        while (!incumbent.compareAndSet(current, better)) {
+            current = incumbent.get();
+            if (value <= current.value) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @see opt.OptimizationAlgorithm#getOptimal()
+     */
+    public Instance getOptimal() {
+        return incumbent.get().instance;
+    }
+
+    /**
+     * Get the number of restarts made so far
+     * @return the restarts
+     */
+    public int getRestarts() {
+        return restarts.get();
+    }
+
+    /**
+     * Stop the climber threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * A point and its value, replaced as a whole
+     */
+    private static class Incumbent {
+        /** The point, a copy no climber changes */
+        private final Instance instance;
+        /** Its value */
+        private final double value;
+
+        private Incumbent(Instance instance, double value) {
+            this.instance = instance;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package opt.test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A directory of finished experiment jobs and checkpoints of unfinished ones,
+ * both named by the SHA-256 of the job's key, which covers the problem, the
+ * algorithm, its parameters, the seed and the iteration schedule. A job whose
+ * key has results is not run again, and a job with a checkpoint goes on from
+ * it. Each result file also holds the key it was written for, so a file is
+ * only ever read back for the job that wrote it.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKResultCache {
+    /** Marks a result file */
+    private static final int MAGIC = 0x414B5243;
+    /** The version of the format */
+    private static final int VERSION = 1;
+    /** The hex digits */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** The directory */
+    private final File dir;
+
+    /**
+     * Use a directory as a cache, making it if needed
+     * @param dir the directory
+     * @throws IOException if it can't be made
+     */
+    public AKResultCache(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can't make the cache directory " + dir);
+        }
+        this.dir = dir;
+    }
+
+    /**
+     * Get the results of a job that finished before
+     * @param job the job
+     * @return its results, or null if it has none
+     * @throws IOException if they can't be read
+     */
+    public List<AKExperimentJob.Result> get(AKExperimentJob job) throws IOException {
+        File file = new File(dir, hash(job) + ".result");
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(job.getKey())) {
+                return null;
+            }
+            int count = in.readInt();
+            List<AKExperimentJob.Result> results = new ArrayList<AKExperimentJob.Result>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(new AKExperimentJob.Result(in.readInt(), in.readDouble(), in.readDouble()));
+            }
+            return results;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Keep the results of a finished job and drop its checkpoint
+     * @param job the job
+     * @param results its results
+     * @throws IOException if they can't be written
+     */
+    public void put(AKExperimentJob job, List<AKExperimentJob.Result> results) throws IOException {
+        File file = new File(dir, hash(job) + ".result");
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(job.getKey());
+            out.writeInt(results.size());
+            for (AKExperimentJob.Result r : results) {
+                out.writeInt(r.getIteration());
+                out.writeDouble(r.getFitness());
+                out.writeDouble(r.getSeconds());
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        checkpoint(job).delete();
+    }
+
+    /**
+     * Get the file a job checkpoints to
+     * @param job the job
+     * @return the checkpoint file, which need not exist
+     */
+    public File checkpoint(AKExperimentJob job) {
+        return new File(dir, hash(job) + ".checkpoint");
+    }
+
+    /**
+     * Hash a job's key
+     * @param job the job
+     * @return the SHA-256 of the key in hex
+     */
+    public static String hash(AKExperimentJob job) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                    job.getKey().getBytes(Charset.forName("UTF-8")));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+                hex[2 * i + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has SHA-256
+            throw new RuntimeException(e);
+        }
+    }
+}
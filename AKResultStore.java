@@ -0,0 +1,65 @@
+package opt.test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Collects experiment results in a CSV file, one row per job and milestone.
+ * Jobs finishing on different threads write whole jobs at a time, and every
+ * job is flushed as it is written, so the rows of the jobs that finished
+ * survive a run that is cut short. An existing file is appended to. The seed
+ * column of a job that didn't seed Distribution.random reads none.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKResultStore {
+    /** The columns */
+    private static final String HEADER = "problem,algorithm,params,repeat,seed,iteration,fitness,seconds";
+
+    /** The output */
+    private final Writer out;
+
+    /**
+     * Open a store on a file, appending to it if it exists
+     * @param path the file
+     * @throws IOException if it can't be opened
+     */
+    public AKResultStore(String path) throws IOException {
+        boolean fresh = !new File(path).exists() || new File(path).length() == 0;
+        this.out = new BufferedWriter(new FileWriter(path, true));
+        if (fresh) {
+            out.write(HEADER);
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    /**
+     * Write the results of a job
+     * @param job the job
+     * @param results its results
+     * @throws IOException if they can't be written
+     */
+    public synchronized void write(AKExperimentJob job, List<AKExperimentJob.Result> results) throws IOException {
+        String prefix = job.getProblem().describe().replace(',', ';') + "," + job.getAlgorithm() + ","
+                + job.describeParams() + "," + job.getRepeat() + ","
+                + (job.isSeeded() ? Long.toString(job.getSeed()) : "none") + ",";
+        for (AKExperimentJob.Result r : results) {
+            out.write(prefix + r.getIteration() + "," + r.getFitness() + "," + r.getSeconds() + "\n");
+        }
+        out.flush();
+    }
+
+    /**
+     * Close the file
+     * @throws IOException if it can't be closed
+     */
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,245 @@
+package opt.test;
+
+import java.io.IOException;
+
+import opt.EvaluationFunction;
+import opt.OptimizationAlgorithm;
+import opt.RandomizedHillClimbing;
+import opt.SimulatedAnnealing;
+import shared.Instance;
+
+/**
+ * Records a time series of a run as it trains. It stands in for the algorithm
+ * it wraps, so it can be handed to an AKConvergenceTrainer, an
+ * AKMilestoneTrainer or a FixedIterationTrainer unchanged, and every so many
+ * iterations it writes a sample to a sink: the iteration, the best score of
+ * the optimum so far, the value the last iteration returned, the evaluations
+ * made, the time spent training and the evaluations per second, and for
+ * single point searches the moves accepted and rejected.
+ *
+ * Only the time spent in the algorithm's train() is counted as elapsed, so
+ * scoring the optimum for a sample and writing it don't show up in the
+ * timings. Evaluations are counted when the algorithm's problem scores
+ * through an AKCountingEvaluationFunction; moves are counted for AKDeltaSearch
+ * and for SimulatedAnnealing and RandomizedHillClimbing, which replace their
+ * current point exactly when they accept a neighbor.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKRunMetrics extends OptimizationAlgorithm {
+    /** The name of the run */
+    private final String run;
+    /** The algorithm */
+    private final OptimizationAlgorithm oa;
+    /** Scores the optimum for the samples, uncounted */
+    private final EvaluationFunction scorer;
+    /** Counts the algorithm's evaluations, or null if they are not counted */
+    private final AKCountingEvaluationFunction counter;
+    /** Where the samples go */
+    private final AKMetricsSink sink;
+    /** The iterations between samples */
+    private int interval = 1;
+
+    /** The iterations run */
+    private int iterations;
+    /** The nanoseconds spent in the algorithm's train() */
+    private long elapsed;
+    /** The best score seen in a sample */
+    private double best = Double.NEGATIVE_INFINITY;
+    /** The value returned by the last iteration */
+    private double current = Double.NaN;
+    /** The counter's calls when the run started */
+    private final long startCalls;
+    /** The delta search's accepted moves when the run started */
+    private final long startAccepted;
+    /** The moves accepted and rejected, counted by identity */
+    private long accepted, rejected;
+    /** The iteration of the last sample */
+    private int recorded;
+
+    /**
+     * Record a run
+     * @param run the name of the run, written with every sample
+     * @param oa the algorithm
+     * @param scorer scores the optimum for the samples, without being counted
+     * @param counter counts the algorithm's evaluations, or null to leave them out
+     * @param sink where the samples go
+     */
+    public AKRunMetrics(String run, OptimizationAlgorithm oa, EvaluationFunction scorer,
+            AKCountingEvaluationFunction counter, AKMetricsSink sink) {
+        super(oa.getOptimizationProblem());
+        this.run = run;
+        this.oa = oa;
+        this.scorer = scorer;
+        this.counter = counter;
+        this.sink = sink;
+        this.startCalls = counter == null ? 0 : counter.getCalls();
+        this.startAccepted = oa instanceof AKDeltaSearch ? ((AKDeltaSearch) oa).getAccepted() : 0;
+    }
+
+    /**
+     * Open a sink on a file that writes on a background thread, JSON for a
+     * .json file and CSV for anything else
+     * @param path the file
+     * @return the sink
+     * @throws IOException if the file can't be opened
+     */
+    public static AKMetricsSink open(String path) throws IOException {
+        AKMetricsSink sink = path.toLowerCase().endsWith(".json") ? new AKJsonMetricsSink(path)
+                : new AKCsvMetricsSink(path);
+        return new AKAsyncMetricsSink(sink);
+    }
+
+    /**
+     * Write a sample every so many iterations, for algorithms whose
+     * iterations are cheap next to scoring
+     * @param interval the iterations between samples
+     */
+    public void setInterval(int interval) {
+        this.interval = Math.max(1, interval);
+    }
+
+    /**
+     * Run one iteration of the algorithm, writing a sample if one is due
+     * @return what the algorithm's train() returned
+     * @see shared.Trainer#train()
+     */
+    public double train() {
+        boolean byIdentity = oa instanceof SimulatedAnnealing || oa instanceof RandomizedHillClimbing;
+        Instance before = byIdentity ? oa.getOptimal() : null;
+        long start = System.nanoTime();
+        current = oa.train();
+        elapsed += System.nanoTime() - start;
+        iterations++;
+        if (byIdentity) {
+            if (oa.getOptimal() != before) {
+                accepted++;
+            } else {
+                rejected++;
+            }
+        }
+        if (iterations % interval == 0) {
+            record();
+        }
+        return current;
+    }
+
+    /**
+     * Write a sample for the last iteration if it has not had one, so the series ends where the run did
+     */
+    public void finish() {
+        if (iterations > recorded) {
+            record();
+        }
+    }
+
+    /**
+     * Score the optimum and write a sample
+     */
+    private void record() {
+        best = Math.max(best, scorer.value(oa.getOptimal()));
+        long evaluations = counter == null ? -1 : counter.getCalls() - startCalls;
+        long accepts = -1, rejects = -1;
+        if (oa instanceof AKDeltaSearch) {
+            accepts = ((AKDeltaSearch) oa).getAccepted() - startAccepted;
+            rejects = iterations - accepts;
+        } else if (oa instanceof SimulatedAnnealing || oa instanceof RandomizedHillClimbing) {
+            accepts = accepted;
+            rejects = rejected;
+        }
+        try {
+            sink.record(new Sample(run, iterations, best, current, evaluations, elapsed, accepts, rejects));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        recorded = iterations;
+    }
+
+    /**
+     * @see opt.OptimizationAlgorithm#getOptimal()
+     */
+    public Instance getOptimal() {
+        return oa.getOptimal();
+    }
+
+    /**
+     * Get the algorithm being recorded
+     * @return the algorithm
+     */
+    public OptimizationAlgorithm getAlgorithm() {
+        return oa;
+    }
+
+    /**
+     * One point of a run's time series
+     */
+    public static class Sample {
+        /** The name of the run */
+        private final String run;
+        /** The iterations run */
+        private final int iteration;
+        /** The best score of the optimum so far */
+        private final double best;
+        /** The value the last iteration returned */
+        private final double current;
+        /** The evaluations made, or -1 if not counted */
+        private final long evaluations;
+        /** The nanoseconds spent training */
+        private final long elapsedNanos;
+        /** The moves accepted and rejected, or -1 if not counted */
+        private final long accepted, rejected;
+
+        public Sample(String run, int iteration, double best, double current, long evaluations, long elapsedNanos,
+                long accepted, long rejected) {
+            this.run = run;
+            this.iteration = iteration;
+            this.best = best;
+            this.current = current;
+            this.evaluations = evaluations;
+            this.elapsedNanos = elapsedNanos;
+            this.accepted = accepted;
+            this.rejected = rejected;
+        }
+
+        public String getRun() {
+            return run;
+        }
+
+        public int getIteration() {
+            return iteration;
+        }
+
+        public double getBest() {
+            return best;
+        }
+
+        public double getCurrent() {
+            return current;
+        }
+
+        public long getEvaluations() {
+            return evaluations;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Get the evaluation rate over the run so far
+         * @return the evaluations per second of training, 0 before any time has passed
+         */
+        public double getEvaluationsPerSecond() {
+            return elapsedNanos == 0 ? 0 : evaluations * 1e9 / elapsedNanos;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+    }
+}
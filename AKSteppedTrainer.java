@@ -0,0 +1,32 @@
+package opt.test;
+
+import shared.Trainer;
+
+/**
+ * A trainer that can be run one iteration at a time and may stop on its own
+ * before it is asked to, as AKConvergenceTrainer does once a run converges.
+ * AKMilestoneTrainer steps such a trainer up to each milestone, so a stopped
+ * run is reported at the later milestones without training any further.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public interface AKSteppedTrainer extends Trainer {
+    /**
+     * Run one iteration unless the trainer has already stopped
+     * @return true if the trainer should go on
+     */
+    boolean iterate();
+
+    /**
+     * Get the number of iterations run
+     * @return the iterations
+     */
+    int getIterations();
+
+    /**
+     * Get the best score the trainer has seen
+     * @return the best score
+     */
+    double getBest();
+}
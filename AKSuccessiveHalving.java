@@ -0,0 +1,261 @@
+package opt.test;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * An adaptive alternative to training every cell of a hyperparameter grid for
+ * the full iteration count. Every configuration is trained for a small
+ * number of iterations and scored, the best 1 / eta of them are kept, and the
+ * survivors train on, the budget growing by eta each rung, until one is left
+ * or the full iteration count is reached. A survivor goes on from where it
+ * was rather than starting over, so its score at each rung is the one a grid
+ * cell run for that many iterations would have had.
+ *
+ * Each rung's candidates train at once on a worker pool, each owning its own
+ * optimizer and evaluation function. Candidates with equal scores keep grid
+ * order, so the ranking does not depend on the number of threads.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKSuccessiveHalving {
+    /** The iterations of the first rung */
+    private final int minIterations;
+    /** The iterations a candidate trains for at most */
+    private final int maxIterations;
+    /** The factor the candidates are cut by and the budget grows by each rung */
+    private final double eta;
+    /** The pool the candidates train on */
+    private final AKWorkerPool pool;
+    /** The iterations trained over every candidate in the last run */
+    private long spent;
+
+    /**
+     * Make a new successive halving search
+     * @param minIterations the iterations of the first rung
+     * @param maxIterations the iterations a candidate trains for at most, the plain grid's count
+     * @param eta the factor the candidates are cut by and the budget grows by each rung, more than 1
+     * @param threads the number of candidates to train at once
+     */
+    public AKSuccessiveHalving(int minIterations, int maxIterations, double eta, int threads) {
+        if (eta <= 1) {
+            throw new IllegalArgumentException("eta must be more than 1, got " + eta);
+        }
+        this.minIterations = Math.max(1, Math.min(minIterations, maxIterations));
+        this.maxIterations = maxIterations;
+        this.eta = eta;
+        this.pool = new AKWorkerPool(threads);
+    }
+
+    /**
+     * Every combination of values along some axes, in the order nested loops over them would visit
+     * @param axes the values of each hyperparameter, as in a paramGrid entry
+     * @return the configurations
+     */
+    public static List<double[]> grid(double[][] axes) {
+        List<double[]> grid = new ArrayList<double[]>();
+        grid.add(new double[0]);
+        for (double[] axis : axes) {
+            List<double[]> next = new ArrayList<double[]>(grid.size() * axis.length);
+            for (double[] partial : grid) {
+                for (double value : axis) {
+                    double[] params = Arrays.copyOf(partial, partial.length + 1);
+                    params[partial.length] = value;
+                    next.add(params);
+                }
+            }
+            grid = next;
+        }
+        return grid;
+    }
+
+    /**
+     * Search a list of configurations
+     * @param configs the configurations
+     * @param factory builds a candidate for a configuration
+     * @return every configuration, the winner first, then the rest by how far they got and their score there
+     */
+    public List<Result> run(List<double[]> configs, final Factory factory) {
+        List<Arm> alive = new ArrayList<Arm>(configs.size());
+        for (int i = 0; i < configs.size(); i++) {
+            alive.add(new Arm(i, configs.get(i)));
+        }
+        List<Result> eliminated = new ArrayList<Result>();
+        spent = 0;
+        int trained = 0, budget = minIterations, rung = 0;
+        while (true) {
+            final int steps = budget - trained;
+            List<Callable<Double>> tasks = new ArrayList<Callable<Double>>(alive.size());
+            for (final Arm r : alive) {
+                tasks.add(new Callable<Double>() {
+                    public Double call() {
+                        if (r.candidate == null) {
+                            r.candidate = factory.create(r.params);
+                        }
+                        r.candidate.train(steps);
+                        return r.candidate.score();
+                    }
+                });
+            }
+            List<Double> scores = pool.invokeAll(tasks);
+            for (int i = 0; i < alive.size(); i++) {
+                alive.get(i).score = scores.get(i);
+            }
+            spent += (long) steps * alive.size();
+            trained = budget;
+            Collections.sort(alive, new Comparator<Arm>() {
+                public int compare(Arm a, Arm b) {
+                    int c = Double.compare(b.score, a.score);
+                    return c != 0 ? c : a.index - b.index;
+                }
+            });
+            if (alive.size() == 1 || trained >= maxIterations) {
+                break;
+            }
+            int keep = Math.max(1, (int) (alive.size() / eta));
+            for (Arm r : alive.subList(keep, alive.size())) {
+                eliminated.add(new Result(r.params, r.score, trained, rung));
+                // the loser's network and population can go
+                r.candidate = null;
+            }
+            alive = new ArrayList<Arm>(alive.subList(0, keep));
+            budget = (int) Math.min(maxIterations, Math.ceil(budget * eta));
+            rung++;
+        }
+        List<Result> ranking = new ArrayList<Result>(configs.size());
+        for (Arm r : alive) {
+            ranking.add(new Result(r.params, r.score, trained, rung));
+        }
+        // later rungs first; within a rung the sort above already put them best first
+        for (int i = eliminated.size() - 1; i >= 0; ) {
+            int end = i;
+            while (i >= 0 && eliminated.get(i).getRung() == eliminated.get(end).getRung()) {
+                i--;
+            }
+            ranking.addAll(eliminated.subList(i + 1, end + 1));
+        }
+        return ranking;
+    }
+
+    /**
+     * Get the iterations trained over every candidate in the last run
+     * @return the iterations, to set against configurations times maxIterations for the plain grid
+     */
+    public long getSpent() {
+        return spent;
+    }
+
+    /**
+     * Stop the worker threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Format a ranking with one row per configuration
+     * @param ranking the ranking
+     * @return the table
+     */
+    public static String table(List<Result> ranking) {
+        DecimalFormat df = new DecimalFormat("0.000");
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-40s %10s %12s %6s%n", "configuration", "score", "iterations", "rung"));
+        for (Result r : ranking) {
+            sb.append(String.format("%-40s %10s %12d %6d%n", Arrays.toString(r.getParams()),
+                    df.format(r.getScore()), r.getIterations(), r.getRung()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * One configuration being searched, trained and scored in steps
+     */
+    public interface Candidate {
+        /**
+         * Train for some more iterations
+         * @param iterations the iterations
+         */
+        void train(int iterations);
+
+        /**
+         * Score the candidate as trained so far, higher being better
+         * @return the score
+         */
+        double score();
+    }
+
+    /**
+     * Builds candidates
+     */
+    public interface Factory {
+        /**
+         * Build a candidate with its own optimizer and evaluation function
+         * @param params the configuration
+         * @return the candidate
+         */
+        Candidate create(double[] params);
+    }
+
+    /**
+     * A configuration still in the search
+     */
+    private static class Arm {
+        /** The position in the grid */
+        private final int index;
+        /** The configuration */
+        private final double[] params;
+        /** The candidate, built in the first rung */
+        private Candidate candidate;
+        /** The last score */
+        private double score;
+
+        private Arm(int index, double[] params) {
+            this.index = index;
+            this.params = params;
+        }
+    }
+
+    /**
+     * How far a configuration got
+     */
+    public static class Result {
+        /** The configuration */
+        private final double[] params;
+        /** Its last score */
+        private final double score;
+        /** The iterations it trained for */
+        private final int iterations;
+        /** The rung it was dropped at, or the last rung for the winner */
+        private final int rung;
+
+        public Result(double[] params, double score, int iterations, int rung) {
+            this.params = params;
+            this.score = score;
+            this.iterations = iterations;
+            this.rung = rung;
+        }
+
+        public double[] getParams() {
+            return params;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public int getRung() {
+            return rung;
+        }
+    }
+}
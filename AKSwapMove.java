@@ -0,0 +1,45 @@
+package opt.test;
+
+import shared.Instance;
+import util.linalg.Vector;
+
+/**
+ * Swap the values at two positions, the move SwapNeighbor and SwapMutation make
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKSwapMove implements AKMove {
+    /** The first position */
+    private final int i;
+    /** The second position */
+    private final int j;
+
+    /**
+     * Make a new swap move
+     * @param i the first position
+     * @param j the second position
+     */
+    public AKSwapMove(int i, int j) {
+        this.i = i;
+        this.j = j;
+    }
+
+    /**
+     * @see opt.test.AKMove#apply(shared.Instance)
+     */
+    public void apply(Instance d) {
+        Vector data = d.getData();
+        double temp = data.get(i);
+        data.set(i, data.get(j));
+        data.set(j, temp);
+    }
+
+    public int getI() {
+        return i;
+    }
+
+    public int getJ() {
+        return j;
+    }
+}
@@ -0,0 +1,21 @@
+package opt.test;
+
+import dist.Distribution;
+import shared.Instance;
+
+/**
+ * Proposes swaps of two random positions, drawn the way SwapNeighbor draws them
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKSwapMoveGenerator implements AKMoveGenerator {
+    /**
+     * @see opt.test.AKMoveGenerator#propose(shared.Instance)
+     */
+    public AKMove propose(Instance d) {
+        int i = Distribution.random.nextInt(d.size());
+        int j = Distribution.random.nextInt(d.size());
+        return new AKSwapMove(i, j);
+    }
+}
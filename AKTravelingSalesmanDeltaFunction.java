@@ -0,0 +1,79 @@
+package opt.test;
+
+import opt.example.TravelingSalesmanRouteEvaluationFunction;
+import shared.Instance;
+
+/**
+ * The route evaluation function for the permutation encoding, plus O(1)
+ * scoring of swap moves. The value of a route is one over its length, so the
+ * length is recovered from the current value and only the at most four edges
+ * touching the swapped positions are re-measured.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKTravelingSalesmanDeltaFunction extends TravelingSalesmanRouteEvaluationFunction
+        implements AKDeltaEvaluationFunction {
+
+    /**
+     * Make a new delta route evaluation function
+     * @param points the points of the cities
+     */
+    public AKTravelingSalesmanDeltaFunction(double[][] points) {
+        super(points);
+    }
+
+    /**
+     * @see opt.test.AKDeltaEvaluationFunction#supports(opt.test.AKMove)
+     */
+    public boolean supports(AKMove move) {
+        return move instanceof AKSwapMove;
+    }
+
+    /**
+     * @see opt.test.AKDeltaEvaluationFunction#valueAfter(shared.Instance, double, opt.test.AKMove)
+     */
+    public double valueAfter(Instance d, double value, AKMove move) {
+        AKSwapMove swap = (AKSwapMove) move;
+        int n = d.size();
+        int i = swap.getI(), j = swap.getJ();
+        if (i == j || n < 3) {
+            return value;
+        }
+        // edge e joins positions e and e + 1; a swap touches the edges either side of i and j
+        int[] edges = { (i + n - 1) % n, i, (j + n - 1) % n, j };
+        double delta = 0;
+        for (int e = 0; e < edges.length; e++) {
+            boolean repeat = false;
+            for (int f = 0; f < e; f++) {
+                repeat |= edges[f] == edges[e];
+            }
+            if (repeat) {
+                continue;
+            }
+            int a = edges[e], b = (edges[e] + 1) % n;
+            delta += getDistance(city(d, a, i, j), city(d, b, i, j))
+                    - getDistance(d.getDiscrete(a), d.getDiscrete(b));
+        }
+        return 1 / (1 / value + delta);
+    }
+
+    /**
+     * @see opt.test.AKDeltaEvaluationFunction#apply(shared.Instance, opt.test.AKMove)
+     */
+    public void apply(Instance d, AKMove move) {
+        move.apply(d);
+    }
+
+    /**
+     * The city at a position once positions i and j are swapped
+     */
+    private static int city(Instance d, int position, int i, int j) {
+        if (position == i) {
+            return d.getDiscrete(j);
+        } else if (position == j) {
+            return d.getDiscrete(i);
+        }
+        return d.getDiscrete(position);
+    }
+}
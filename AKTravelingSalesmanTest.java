@@ -3,28 +3,23 @@ package opt.test;
 import java.util.Arrays;
 import java.util.Random;
 
-import dist.DiscreteDependencyTree;
 import dist.DiscretePermutationDistribution;
 import dist.DiscreteUniformDistribution;
 import dist.Distribution;
 
 import opt.SwapNeighbor;
+import opt.OptimizationAlgorithm;
 import opt.GenericHillClimbingProblem;
 import opt.HillClimbingProblem;
 import opt.NeighborFunction;
-import opt.RandomizedHillClimbing;
-import opt.SimulatedAnnealing;
 import opt.example.*;
 import opt.ga.CrossoverFunction;
 import opt.ga.SwapMutation;
 import opt.ga.GenericGeneticAlgorithmProblem;
 import opt.ga.GeneticAlgorithmProblem;
 import opt.ga.MutationFunction;
-import opt.ga.StandardGeneticAlgorithm;
 import opt.prob.GenericProbabilisticOptimizationProblem;
-import opt.prob.MIMIC;
 import opt.prob.ProbabilisticOptimizationProblem;
-import shared.FixedIterationTrainer;
 
 /**
  *
@@ -34,6 +29,26 @@ import shared.FixedIterationTrainer;
 public class AKTravelingSalesmanTest {
     /** The n value */
     private static final int N = 50;
+    /** The iterations without improvement before RHC and SA stop early, scored every CHECK_INTERVAL */
+    private static final int STALL_ITERATIONS = 20000, CHECK_INTERVAL = 100;
+    /** The generations without improvement before GA and MIMIC stop early */
+    private static final int STALL_GENERATIONS = 100;
+    /** The number of GA islands and of threads used to score MIMIC samples */
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    /** The coldest and hottest parallel tempering temperatures */
+    private static final double T_MIN = 1E-5, T_MAX = 1E-1;
+    /** The steps each parallel tempering chain takes between swaps */
+    private static final int SWEEP = 100;
+    /** The parallel tempering milestones, in sweeps */
+    private static final double[] SWEEPS = { 1, 10, 100, 1000, 2000 };
+    /** The wall clock budget of each algorithm in the equal cost comparison, in seconds */
+    private static final double TIME_BUDGET = 2;
+    /** The evaluation budget of each algorithm in the equal cost comparison */
+    private static final long EVALUATION_BUDGET = 200000;
+    /** The GA generations between migrations between islands */
+    private static final int MIGRATION_INTERVAL = 10;
+    /** The individuals each GA island sends its neighbor per migration */
+    private static final int MIGRANTS = 2;
     /**
      * The test main
      * @param args ignored
@@ -47,9 +62,11 @@ public class AKTravelingSalesmanTest {
             points[i][1] = random.nextDouble();
         }
         // for rhc, sa, and ga we use a permutation based encoding
-        TravelingSalesmanEvaluationFunction ef = new TravelingSalesmanRouteEvaluationFunction(points);
+        // the route function that also scores swaps in O(1), used by the move based rhc and sa
+        final TravelingSalesmanEvaluationFunction ef = new AKTravelingSalesmanDeltaFunction(points);
         Distribution odd = new DiscretePermutationDistribution(N);
         NeighborFunction nf = new SwapNeighbor();
+        AKMoveGenerator swaps = new AKSwapMoveGenerator();
         MutationFunction mf = new SwapMutation();
         CrossoverFunction cf = new TravelingSalesmanCrossOver(ef);
         HillClimbingProblem hcp = new GenericHillClimbingProblem(ef, odd, nf);
@@ -72,79 +89,175 @@ public class AKTravelingSalesmanTest {
             }
         };
 
-        FixedIterationTrainer fit;
+        // each optimizer runs once up to its largest iteration count and is scored at every milestone
 
         // RHC
-        for (double iter : paramGrid[3][0]) {
-            // long starttime = System.currentTimeMillis();
-            RandomizedHillClimbing rhc = new RandomizedHillClimbing(hcp);
-            fit = new FixedIterationTrainer(rhc, (int) iter);
-            fit.train();
-            System.out.println(iter + " iter, RHC: " + ef.value(rhc.getOptimal()));
-            // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
-        }
+        // long starttime = System.currentTimeMillis();
+        final AKDeltaSearch rhc = new AKDeltaSearch(hcp, ef, swaps);
+        final AKConvergenceTrainer rhcRun = AKConvergenceTrainer.onPlateau(rhc, ef, STALL_ITERATIONS, CHECK_INTERVAL);
+        new AKMilestoneTrainer(rhcRun, paramGrid[3][0], new AKMilestoneTrainer.Listener() {
+            public void milestone(int iter) {
+                System.out.println((double) iter + " iter, RHC: " + ef.value(rhc.getOptimal()));
+            }
+        }).train();
+        System.out.println("RHC " + rhcRun);
+        // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
 
         System.out.println("============================");
-        double t0 = 10, coolingRate = 0.1;
-
-        for (double iter : paramGrid[3][0]) {
-
-            // // SA grid search
-            // for (t0 : paramGrid[0][0]) {
-            //     for (coolingRate : paramGrid[0][1]) {
-            // starttime = System.currentTimeMillis();
-            SimulatedAnnealing sa = new SimulatedAnnealing(t0, coolingRate, hcp);
-            fit = new FixedIterationTrainer(sa, (int) iter);
-            fit.train();
-            System.out.println("\n" + iter + " iter, SA || t0: " + t0 + ", coolingRate: " + coolingRate + "\n\t"
-                    + ef.value(sa.getOptimal()));
-            // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
-            //     }
-            // }
-        }
+        final double t0 = 10, coolingRate = 0.1;
+
+        // // SA grid search
+        // for (double t0 : paramGrid[0][0]) {
+        //     for (double coolingRate : paramGrid[0][1]) {
+        // starttime = System.currentTimeMillis();
+        final AKDeltaSearch sa = new AKDeltaSearch(t0, coolingRate, hcp, ef, swaps);
+        final AKConvergenceTrainer saRun = AKConvergenceTrainer.onPlateau(sa, ef, STALL_ITERATIONS, CHECK_INTERVAL);
+        new AKMilestoneTrainer(saRun, paramGrid[3][0], new AKMilestoneTrainer.Listener() {
+            public void milestone(int iter) {
+                System.out.println("\n" + (double) iter + " iter, SA || t0: " + t0 + ", coolingRate: " + coolingRate + "\n\t"
+                        + ef.value(sa.getOptimal()));
+            }
+        }).train();
+        System.out.println("SA " + saRun);
+        // System.out.println("Time : "+ (System.currentTimeMillis() - starttime));
+        //     }
+        // }
 
         System.out.println("============================");
-        double popSize = 1000, toMate = 0.1, toMutate = 0.06;
-
-        for (double iter : paramGrid[3][1]) {
-            // GA grid search
-            // for (double popSize : paramGrid[1][0]) {
-            //     for (double toMate : paramGrid[1][1]) {
-            //         for (double toMutate: paramGrid[1][2]) {
-                        StandardGeneticAlgorithm ga = new StandardGeneticAlgorithm((int)popSize, (int) (popSize * toMate),
-                                (int) (popSize * toMutate), gap);
-                        fit = new FixedIterationTrainer(ga, (int) iter);
-                        fit.train();
-                        System.out.println("\n" + iter + " iter, GA || popSize: " + popSize + ", toMate: " + toMate + ", toMutate: "
-                                + toMutate + "\n\t" + ef.value(ga.getOptimal()));
-            //         }
-            //     }
-            // }
-        }
+        // parallel tempering: one chain per core on a temperature ladder in place of the SA grid search
+        final AKReplicaExchangeAnnealing pt = new AKReplicaExchangeAnnealing(T_MIN, T_MAX, THREADS, SWEEP, hcp, ef, swaps);
+        new AKMilestoneTrainer(pt, SWEEPS, new AKMilestoneTrainer.Listener() {
+            public void milestone(int iter) {
+                System.out.println("\n" + (double) iter * SWEEP + " iter, PT || tMin: " + T_MIN + ", tMax: " + T_MAX
+                        + ", replicas: " + THREADS + ", swap rate: " + pt.getSwapRate() + "\n\t" + ef.value(pt.getOptimal()));
+            }
+        }).train();
+        pt.shutdown();
+
+        System.out.println("============================");
+        final double popSize = 1000, toMate = 0.1, toMutate = 0.06;
+
+        // GA grid search
+        // for (double popSize : paramGrid[1][0]) {
+        //     for (double toMate : paramGrid[1][1]) {
+        //         for (double toMutate: paramGrid[1][2]) {
+                    // the population, mates and mutants are spread over up to one island per core, swapping their best every few generations
+                    final AKIslandGeneticAlgorithm ga = new AKIslandGeneticAlgorithm(THREADS, (int) popSize,
+                            (int) (popSize * toMate), (int) (popSize * toMutate), gap, ef,
+                            AKIslandGeneticAlgorithm.Topology.RING, MIGRATION_INTERVAL, MIGRANTS);
+                    final AKConvergenceTrainer gaRun = AKConvergenceTrainer.onPlateau(ga, ef, STALL_GENERATIONS, 1);
+                    new AKMilestoneTrainer(gaRun, paramGrid[3][1], new AKMilestoneTrainer.Listener() {
+                        public void milestone(int iter) {
+                            System.out.println("\n" + (double) iter + " iter, GA || popSize: " + popSize + ", toMate: " + toMate
+                                    + ", toMutate: " + toMutate + "\n\t" + ef.value(ga.getOptimal()));
+                        }
+                    }).train();
+                    System.out.println("GA " + gaRun);
+                    ga.shutdown();
+        //         }
+        //     }
+        // }
 
 
         // for MIMIC we use a sort encoding
-        ef = new TravelingSalesmanSortEvaluationFunction(points);
+        final TravelingSalesmanEvaluationFunction sortEf = new TravelingSalesmanSortEvaluationFunction(points);
         int[] ranges = new int[N];
         Arrays.fill(ranges, N);
         odd = new  DiscreteUniformDistribution(ranges);
-        Distribution df = new DiscreteDependencyTree(.1, ranges);
-        ProbabilisticOptimizationProblem pop = new GenericProbabilisticOptimizationProblem(ef, odd, df);
+        AKParallelDependencyTree df = new AKParallelDependencyTree(.1, ranges, THREADS);
+        ProbabilisticOptimizationProblem pop = new GenericProbabilisticOptimizationProblem(sortEf, odd, df);
 
         System.out.println("============================");
-        double samples = 200, toKeep = 10;
-        for (double iter : paramGrid[3][1]) {
-            // MIMIC grid search
-            // for (samples: paramGrid[2][0]) {
-            //     for (toKeep: paramGrid[2][1]) {
-                    MIMIC mimic = new MIMIC((int)samples, (int)toKeep, pop);
-                    fit = new FixedIterationTrainer(mimic, (int) iter);
-                    fit.train();
-                    System.out.println("\n" + iter + " iter, MIMIC || samples: " + samples + ", toKeep: " + toKeep
-                            + "\n\t" + ef.value(mimic.getOptimal()));
-            //     }
-            // }
+        final double samples = 200, toKeep = 10;
+        // MIMIC grid search
+        // for (double samples : paramGrid[2][0]) {
+        //     for (double toKeep : paramGrid[2][1]) {
+                AKPopulationEvaluator mimicEvaluator = new AKPopulationEvaluator(sortEf, THREADS);
+                final AKParallelMIMIC mimic = new AKParallelMIMIC((int)samples, (int)toKeep, pop, mimicEvaluator);
+                final AKConvergenceTrainer mimicRun = AKConvergenceTrainer.onPlateau(mimic, sortEf, STALL_GENERATIONS, 1);
+                new AKMilestoneTrainer(mimicRun, paramGrid[3][1], new AKMilestoneTrainer.Listener() {
+                    public void milestone(int iter) {
+                        System.out.println("\n" + (double) iter + " iter, MIMIC || samples: " + samples + ", toKeep: " + toKeep
+                                + "\n\t" + sortEf.value(mimic.getOptimal()));
+                    }
+                }).train();
+                System.out.println("MIMIC " + mimicRun);
+                mimicEvaluator.shutdown();
+        //     }
+        // }
+        df.shutdown();
+
+        // equal cost comparison: the same algorithms against a time budget, then an evaluation budget
+        budgets(points);
+    }
+
+    /**
+     * Run each algorithm once against a wall clock budget and once against an
+     * evaluation budget, printing the best route value against time and evaluations
+     * @param points the points of the cities
+     */
+    private static void budgets(double[][] points) {
+        String[] names = { "RHC", "SA", "GA", "MIMIC" };
+        for (int budget = 0; budget < 2; budget++) {
+            System.out.println("============================\n"
+                    + (budget == 0 ? TIME_BUDGET + " second budget" : EVALUATION_BUDGET + " evaluation budget"));
+            for (int algorithm = 0; algorithm < names.length; algorithm++) {
+                System.out.println(budgeted(names[algorithm], algorithm, points, budget == 0));
+            }
         }
+    }
 
+    /**
+     * Run one algorithm (0 = RHC, 1 = SA, 2 = GA, 3 = MIMIC) on a counted evaluation function against a
+     * budget, then stop the worker threads it was built with
+     * @param timed true for the wall clock budget, false for the evaluation budget
+     * @return the trace as a table
+     */
+    private static String budgeted(String name, int algorithm, double[][] points, boolean timed) {
+        AKPopulationEvaluator evaluator = null;
+        AKParallelDependencyTree tree = null;
+        AKBudgetedRun run;
+        if (algorithm == 3) {
+            TravelingSalesmanEvaluationFunction sortEf = new TravelingSalesmanSortEvaluationFunction(points);
+            AKCountingEvaluationFunction counted = new AKCountingEvaluationFunction(sortEf);
+            int[] ranges = new int[N];
+            Arrays.fill(ranges, N);
+            tree = new AKParallelDependencyTree(.1, ranges, THREADS);
+            ProbabilisticOptimizationProblem pop = new GenericProbabilisticOptimizationProblem(counted,
+                    new DiscreteUniformDistribution(ranges), tree);
+            evaluator = new AKPopulationEvaluator(counted, THREADS);
+            run = new AKBudgetedRun(name, new AKParallelMIMIC(200, 10, pop, evaluator), sortEf, counted);
+        } else {
+            TravelingSalesmanEvaluationFunction ef = new AKTravelingSalesmanDeltaFunction(points);
+            AKCountingEvaluationFunction counted = new AKCountingEvaluationFunction(ef);
+            Distribution odd = new DiscretePermutationDistribution(N);
+            OptimizationAlgorithm oa;
+            if (algorithm == 2) {
+                GeneticAlgorithmProblem gap = new GenericGeneticAlgorithmProblem(counted, odd, new SwapMutation(),
+                        new TravelingSalesmanCrossOver(ef));
+                evaluator = new AKPopulationEvaluator(counted, THREADS);
+                oa = new AKParallelGeneticAlgorithm(1000, 100, 60, gap, evaluator);
+            } else {
+                HillClimbingProblem hcp = new GenericHillClimbingProblem(counted, odd, new SwapNeighbor());
+                oa = algorithm == 0 ? new AKDeltaSearch(hcp, counted, new AKSwapMoveGenerator())
+                        : new AKDeltaSearch(10, 0.1, hcp, counted, new AKSwapMoveGenerator());
+            }
+            run = new AKBudgetedRun(name, oa, ef, counted);
+        }
+        if (timed) {
+            run.setDeadline(TIME_BUDGET);
+        } else {
+            run.setMaxEvaluations(EVALUATION_BUDGET);
+        }
+        try {
+            return run.table(run.run());
+        } finally {
+            if (evaluator != null) {
+                evaluator.shutdown();
+            }
+            if (tree != null) {
+                tree.shutdown();
+            }
+        }
     }
 }
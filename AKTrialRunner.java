@@ -0,0 +1,187 @@
+package opt.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Runs repeated, independent trials of several algorithms concurrently and
+ * averages their accuracies per algorithm. Each trial is a task that owns its
+ * network, problem and optimizer, so the wall clock time of a batch is close
+ * to that of its slowest trial rather than the sum of all of them. A trial
+ * may report one result per iteration milestone it passes. The trials run as
+ * the cells of an AKGridSearch, so a runner runs once.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKTrialRunner {
+    /** A trial's training accuracy */
+    public static final Measure TRAIN_ACCURACY = new Measure() {
+        public double of(Trial t) {
+            return t.getTrainAccuracy();
+        }
+    };
+    /** A trial's test accuracy */
+    public static final Measure TEST_ACCURACY = new Measure() {
+        public double of(Trial t) {
+            return t.getTestAccuracy();
+        }
+    };
+
+    /** Runs the trials */
+    private final AKGridSearch<List<Trial>> search;
+
+    /**
+     * Make a new trial runner
+     * @param threads the number of trials to run at once
+     */
+    public AKTrialRunner(int threads) {
+        this.search = new AKGridSearch<List<Trial>>(threads);
+    }
+
+    /**
+     * Add a trial
+     * @param trial the trial, which trains and scores one optimizer at each of its milestones
+     */
+    public void add(Callable<List<Trial>> trial) {
+        search.add(trial);
+    }
+
+    /**
+     * Run every trial added, then stop the worker threads
+     * @return the trial results, in the order the trials were added
+     */
+    public List<Trial> run() {
+        List<Trial> results = new ArrayList<Trial>();
+        for (List<Trial> milestones : search.run()) {
+            results.addAll(milestones);
+        }
+        return results;
+    }
+
+    /**
+     * Pick out the results taken at the given number of iterations
+     * @param results the trial results
+     * @param iterations the milestone
+     * @return the matching results, in their original order
+     */
+    public static List<Trial> atIterations(List<Trial> results, int iterations) {
+        List<Trial> matching = new ArrayList<Trial>();
+        for (Trial t : results) {
+            if (t.getIterations() == iterations) {
+                matching.add(t);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Average a measure of the trials in each group
+     * @param results the trial results
+     * @param groups the number of groups
+     * @param measure what to average, such as TRAIN_ACCURACY or TEST_ACCURACY
+     * @return the averages, indexed by group, 0 for a group without trials
+     */
+    public static double[] average(List<Trial> results, int groups, Measure measure) {
+        double[] sum = new double[groups];
+        int[] count = new int[groups];
+        for (Trial t : results) {
+            sum[t.getGroup()] += measure.of(t);
+            count[t.getGroup()]++;
+        }
+        for (int i = 0; i < groups; i++) {
+            sum[i] = count[i] == 0 ? 0 : sum[i] / count[i];
+        }
+        return sum;
+    }
+
+    /**
+     * A number taken from each trial result
+     */
+    public interface Measure {
+        /**
+         * Take the number from a result
+         * @param t the result
+         * @return the number
+         */
+        double of(Trial t);
+    }
+
+    /**
+     * The result of one trial
+     */
+    public static class Trial {
+        /** The algorithm group the trial belongs to */
+        private final int group;
+        /** The trial number within its group */
+        private final int number;
+        /** The number of training iterations the result was taken at */
+        private final int iterations;
+        /** The iterations actually run, fewer than iterations when the trial stopped early */
+        private final int trainedIterations;
+        /** The accuracy on the training set */
+        private final double trainAccuracy;
+        /** The accuracy on the test set */
+        private final double testAccuracy;
+        /** The training time in seconds */
+        private final double trainingTime;
+        /** The testing time in seconds */
+        private final double testingTime;
+
+        /**
+         * Make a new trial result
+         * @param group the algorithm group
+         * @param number the trial number
+         * @param iterations the milestone the result was taken at
+         * @param trainedIterations the iterations actually run by then
+         * @param trainAccuracy the training accuracy
+         * @param testAccuracy the test accuracy
+         * @param trainingTime the training time in seconds
+         * @param testingTime the testing time in seconds
+         */
+        public Trial(int group, int number, int iterations, int trainedIterations, double trainAccuracy,
+                double testAccuracy, double trainingTime, double testingTime) {
+            this.group = group;
+            this.number = number;
+            this.iterations = iterations;
+            this.trainedIterations = trainedIterations;
+            this.trainAccuracy = trainAccuracy;
+            this.testAccuracy = testAccuracy;
+            this.trainingTime = trainingTime;
+            this.testingTime = testingTime;
+        }
+
+        public int getGroup() {
+            return group;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public int getTrainedIterations() {
+            return trainedIterations;
+        }
+
+        public double getTrainAccuracy() {
+            return trainAccuracy;
+        }
+
+        public double getTestAccuracy() {
+            return testAccuracy;
+        }
+
+        public double getTrainingTime() {
+            return trainingTime;
+        }
+
+        public double getTestingTime() {
+            return testingTime;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package opt.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed size pool of daemon worker threads that runs independent tasks
+ * and hands their results back in the order the tasks were submitted.
+ * A pool of size 1 runs every task on the calling thread.
+ *
+ * @author Aayush Kumar
+ * @version 1.0
+ */
+public class AKWorkerPool {
+    /** The number of worker threads */
+    private final int threads;
+    /** The executor, created on first use */
+    private ExecutorService executor;
+
+    /**
+     * Make a new worker pool
+     * @param threads the number of worker threads, at least 1
+     */
+    public AKWorkerPool(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1, got " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Make a worker pool with one thread per available processor
+     */
+    public AKWorkerPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Get the number of worker threads
+     * @return the pool size
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Run all of the tasks and wait for them to finish
+     * @param tasks the tasks to run
+     * @return the results, in the same order as the tasks
+     */
+    public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (threads == 1 || tasks.size() <= 1) {
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return results;
+        }
+        try {
+            for (Future<T> future : executor().invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+        return results;
+    }
+
+    /**
+     * Split the range [0, n) into at most one contiguous chunk per worker and
+     * run the body on every chunk
+     * @param n the size of the range
+     * @param minChunk the smallest chunk worth handing to its own thread
+     * @param body the body to run on each chunk
+     */
+    public void forRange(int n, int minChunk, final RangeBody body) {
+        int chunks = Math.max(1, Math.min(threads, n / Math.max(1, minChunk)));
+        if (chunks == 1) {
+            body.run(0, n);
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int from = (int) ((long) n * c / chunks);
+            final int to = (int) ((long) n * (c + 1) / chunks);
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    body.run(from, to);
+                    return null;
+                }
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    /**
+     * Stop the worker threads once the queued tasks are done
+     */
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Get the executor, starting the worker threads if needed
+     * @return the executor
+     */
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ak-worker-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * A loop body over a contiguous index range
+     */
+    public interface RangeBody {
+        /**
+         * Run the body over [from, to)
+         * @param from the first index
+         * @param to one past the last index
+         */
+        void run(int from, int to);
+    }
+}